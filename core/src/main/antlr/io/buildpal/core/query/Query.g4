@@ -11,6 +11,7 @@ filter
    | filter SP LOGICAL_OPERATOR SP filter                                                             #logicalExp
    | attrPath SP 'pr'                                                                                 #presentExp
    | attrPath SP op=( 'eq' | 'ne' | 'gt' | 'lt' | 'ge' | 'le' | 'co' | 'sw' | 'ew' ) SP value         #compareExp
+   | attrPath '[' filter ']'                                                                          #valuePathExp
 
    ;
 
@@ -53,6 +53,8 @@ public class Constants {
     public static final String KILL_CONTAINERS_ADDRESS = "oci.containers.kill";
     public static final String SAVE_USER_AFFINITY_ADDRESS = "user.affinity.save";
     public static final String DELETE_WORKSPACE_ADDRESS = "workspace.delete";
+    public static final String PHASE_CACHE_STORE_ADDRESS = "phase.cache.store";
+    public static final String PHASE_CACHE_EVICT_ADDRESS = "phase.cache.evict";
 
     public final static String BUILDPAL_DATA_VOLUME = "buildpal-data";
 
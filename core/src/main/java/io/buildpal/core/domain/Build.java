@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static io.buildpal.core.domain.DataItem.VALUE;
+import static io.buildpal.core.domain.Phase.CACHED_FROM;
 import static io.buildpal.core.domain.Phase.CONTAINER_HOST;
 import static io.buildpal.core.domain.Phase.CONTAINER_ID;
 import static io.buildpal.core.domain.Phase.CONTAINER_PORT;
@@ -33,9 +34,14 @@ import static io.buildpal.core.domain.Phase.CONTAINER_PORT;
 public class Build extends Entity<Build> {
     public static final String BUILD = "build";
 
-    private static final String STATUS = "status";
-    private static final String UTC_END_DATE = "utcEndDate";
-    private static final String PIPELINE_ID = "pipelineID";
+    public static final String STATUS = "status";
+    public static final String UTC_END_DATE = "utcEndDate";
+    public static final String PIPELINE_ID = "pipelineID";
+    public static final String PRIORITY = "priority";
+
+    // Range of the priorities users can give to their builds. It only reorders builds with equal shares.
+    public static final int MIN_PRIORITY = -10;
+    public static final int MAX_PRIORITY = 10;
     private static final String DEPLOYMENT_ID = "deploymentID";
     private static final String PHASES = "phases";
     private static final String DATA = "data";
@@ -89,6 +95,15 @@ public class Build extends Entity<Build> {
         return this;
     }
 
+    public int getPriority() {
+        return jsonObject.getInteger(PRIORITY, 0);
+    }
+
+    public Build setPriority(int priority) {
+        jsonObject.put(PRIORITY, priority);
+        return this;
+    }
+
     public String getDeploymentID() {
         return jsonObject.getString(DEPLOYMENT_ID);
     }
@@ -270,6 +285,9 @@ public class Build extends Entity<Build> {
         for (int p=0; p<phases.size(); p++) {
             BuildPhase phase = new BuildPhase(phases.getJsonObject(p));
 
+            // Cached phases refer to the containers of an earlier build.
+            if (phase.isCached()) continue;
+
             String containerID = phase.getContainerID();
 
             if (StringUtils.isNotBlank(containerID)) {
@@ -314,6 +332,10 @@ public class Build extends Entity<Build> {
                 if (phase.hasContainerPort()) {
                     buildPhase.setContainerPort(phase.getContainerPort());
                 }
+
+                if (phase.isCached()) {
+                    buildPhase.setCachedFrom(phase.getCachedFrom());
+                }
                 break;
             }
         }
@@ -394,6 +416,19 @@ public class Build extends Entity<Build> {
             }
         }
 
+        public String getCachedFrom() {
+            return jsonObject.getString(CACHED_FROM);
+        }
+
+        public BuildPhase setCachedFrom(String buildID) {
+            jsonObject.put(CACHED_FROM, buildID);
+            return this;
+        }
+
+        public boolean isCached() {
+            return jsonObject.containsKey(CACHED_FROM) && StringUtils.isNotBlank(getCachedFrom());
+        }
+
         public static BuildPhase fromPhase(Phase phase) {
             BuildPhase buildPhase = new Build.BuildPhase()
                     .setID(phase.getID())
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.domain;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Set;
+
+import static io.buildpal.core.domain.Build.STATUS;
+import static io.buildpal.core.domain.Build.UTC_END_DATE;
+
+/**
+ * Compact update of a build: its status plus the phases that changed, each with its index in the build's phases.
+ */
+public class BuildPatch extends Entity<BuildPatch> {
+    /**
+     * Message header that marks a build update as a patch.
+     */
+    public static final String PATCH = "patch";
+
+    private static final String PHASES = "phases";
+    private static final String INDEX = "index";
+
+    public BuildPatch() {
+        super();
+    }
+
+    public BuildPatch(JsonObject jsonObject) {
+        super(jsonObject);
+    }
+
+    public static BuildPatch of(Build build, Set<String> phaseIDs) {
+        BuildPatch patch = new BuildPatch().setID(build.getID());
+
+        patch.jsonObject.put(STATUS, build.getStatus());
+
+        if (build.getUtcEndDate() != null) {
+            patch.jsonObject.put(UTC_END_DATE, build.getUtcEndDate());
+        }
+
+        JsonArray phases = build.getPhases();
+        JsonArray patchPhases = new JsonArray();
+
+        for (int p=0; p<phases.size(); p++) {
+            JsonObject phase = phases.getJsonObject(p);
+
+            if (phaseIDs.contains(phase.getString(ID))) {
+                patchPhases.add(phase.copy().put(INDEX, p));
+            }
+        }
+
+        patch.jsonObject.put(PHASES, patchPhases);
+
+        return patch;
+    }
+
+    /**
+     * Applies the patch to the given build.
+     *
+     * @return the patched {@link Build} instance.
+     */
+    public Build applyTo(Build build) {
+        Build patch = new Build(jsonObject);
+
+        if (patch.getStatus() != null) {
+            build.setStatus(patch.getStatus());
+        }
+
+        if (jsonObject.containsKey(UTC_END_DATE)) {
+            build.setUtcEndDate(patch.getUtcEndDate());
+        }
+
+        JsonArray phases = build.getPhases();
+        JsonArray patchPhases = jsonObject.getJsonArray(PHASES, new JsonArray());
+
+        for (int pp=0; pp<patchPhases.size(); pp++) {
+            JsonObject patchPhase = patchPhases.getJsonObject(pp);
+            JsonObject phase = findPhase(phases, patchPhase.getInteger(INDEX, -1), patchPhase.getString(ID));
+
+            if (phase != null) {
+                patchPhase.remove(INDEX);
+                phase.mergeIn(patchPhase);
+            }
+        }
+
+        return build;
+    }
+
+    private static JsonObject findPhase(JsonArray phases, int index, String id) {
+        // The index is a hint; fall back to the ID if the phases were rearranged.
+        if (index > -1 && index < phases.size() && id.equals(phases.getJsonObject(index).getString(ID))) {
+            return phases.getJsonObject(index);
+        }
+
+        for (int p=0; p<phases.size(); p++) {
+            if (id.equals(phases.getJsonObject(p).getString(ID))) {
+                return phases.getJsonObject(p);
+            }
+        }
+
+        return null;
+    }
+}
@@ -33,6 +33,9 @@ public class Phase extends Entity<Phase> {
     static final String CONTAINER_HOST = "containerHost";
     static final String CONTAINER_PORT = "containerPort";
 
+    static final String CACHED_FROM = "cachedFrom";
+    private static final String CACHE_KEY = "cacheKey";
+
     private static final String INDEX = "index";
     private static final String STATUS = "status";
 
@@ -42,6 +45,10 @@ public class Phase extends Entity<Phase> {
     private static final String _DOCKER = "_docker";
     private static final String _ENV = "_env";
     private static final String _REPO = "_repo";
+    private static final String _DEPENDS_ON = "_dependsOn";
+    private static final String _CACHE = "_cache";
+    private static final String _INPUTS = "_inputs";
+    private static final String _OUTPUTS = "_outputs";
 
     private static final String _PRE_SCRIPT = "_preScript";
     private static final String _MAIN_SCRIPT = "_mainScript";
@@ -152,6 +159,80 @@ public class Phase extends Entity<Phase> {
         return jsonObject.getString(_REPO, EMPTY);
     }
 
+    /**
+     * @return IDs of the phases this phase depends on, or null if the dependencies were not declared.
+     */
+    public JsonArray getDependsOn() {
+        return jsonObject.getJsonArray(_DEPENDS_ON);
+    }
+
+    /**
+     * @return true if the pipeline declared the workspace paths the phase's result depends on.
+     */
+    public boolean isCacheable() {
+        return !getCacheInputs().isEmpty();
+    }
+
+    /**
+     * @return workspace paths (relative to the phase's repo) that the phase reads.
+     */
+    public JsonArray getCacheInputs() {
+        JsonObject cache = jsonObject.getJsonObject(_CACHE);
+
+        return cache == null ? new JsonArray() : cache.getJsonArray(_INPUTS, new JsonArray());
+    }
+
+    /**
+     * @return workspace paths (relative to the phase's repo) that the phase writes for the phases after it.
+     */
+    public JsonArray getCacheOutputs() {
+        JsonObject cache = jsonObject.getJsonObject(_CACHE);
+
+        return cache == null ? new JsonArray() : cache.getJsonArray(_OUTPUTS, new JsonArray());
+    }
+
+    /**
+     * @return the parts of the phase that decide its result.
+     */
+    public JsonObject definition() {
+        JsonObject definition = new JsonObject();
+
+        for (String key : List.of(_ID, _CONTAINER_ARGS, _DOCKER, _ENV, _REPO, _PRE_SCRIPT, _MAIN_SCRIPT, _CACHE)) {
+            definition.put(key, jsonObject.getValue(key));
+        }
+
+        return definition;
+    }
+
+    public String getCacheKey() {
+        return jsonObject.getString(CACHE_KEY);
+    }
+
+    public Phase setCacheKey(String cacheKey) {
+        jsonObject.put(CACHE_KEY, cacheKey);
+        return this;
+    }
+
+    public boolean hasCacheKey() {
+        return jsonObject.containsKey(CACHE_KEY) && StringUtils.isNotBlank(getCacheKey());
+    }
+
+    /**
+     * @return ID of the earlier build whose result was reused for this phase.
+     */
+    public String getCachedFrom() {
+        return jsonObject.getString(CACHED_FROM);
+    }
+
+    public Phase setCachedFrom(String buildID) {
+        jsonObject.put(CACHED_FROM, buildID);
+        return this;
+    }
+
+    public boolean isCached() {
+        return jsonObject.containsKey(CACHED_FROM) && StringUtils.isNotBlank(getCachedFrom());
+    }
+
     public String getPreScript() {
         return jsonObject.getString(_PRE_SCRIPT);
     }
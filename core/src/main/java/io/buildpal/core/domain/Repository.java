@@ -38,6 +38,10 @@ public class Repository extends Entity<Repository> {
     private static final String BRANCH = "branch";
     private static final String REMOTE = "remote";
 
+    private static final String CLONE_DEPTH = "cloneDepth";
+    private static final String SPARSE_PATHS = "sparsePaths";
+    private static final String FILTER = "filter";
+
     private static final String VIEW_MAPPINGS = "viewMappings";
     private static final String FORCE_UPDATE = "forceUpdate";
     private static final String QUIET = "quiet";
@@ -152,6 +156,49 @@ public class Repository extends Entity<Repository> {
         return this;
     }
 
+    /**
+     * @return the number of commits to fetch, or 0 for the full history.
+     */
+    public int getCloneDepth() {
+        return jsonObject.getInteger(CLONE_DEPTH, 0);
+    }
+
+    public Repository setCloneDepth(int cloneDepth) {
+        jsonObject.put(CLONE_DEPTH, cloneDepth);
+        return this;
+    }
+
+    /**
+     * @return the directories to check out (cone mode sparse checkout), or null for the whole tree.
+     */
+    public JsonArray getSparsePaths() {
+        return jsonObject.getJsonArray(SPARSE_PATHS);
+    }
+
+    public Repository setSparsePaths(List<String> sparsePaths) {
+        jsonObject.put(SPARSE_PATHS, sparsePaths);
+        return this;
+    }
+
+    /**
+     * @return the partial clone filter, e.g. "blob:none", or null to fetch every object.
+     */
+    public String getFilter() {
+        return jsonObject.getString(FILTER);
+    }
+
+    public Repository setFilter(String filter) {
+        jsonObject.put(FILTER, filter);
+        return this;
+    }
+
+    public boolean isPartialClone() {
+        JsonArray sparsePaths = getSparsePaths();
+
+        return getCloneDepth() > 0 || StringUtils.isNotBlank(getFilter()) ||
+                (sparsePaths != null && !sparsePaths.isEmpty());
+    }
+
     public JsonArray getViewMappings() {
         return jsonObject.getJsonArray(VIEW_MAPPINGS);
     }
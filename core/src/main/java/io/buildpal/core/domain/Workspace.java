@@ -94,4 +94,11 @@ public class Workspace extends Entity<Workspace> {
     public Workspace cloneMe() {
         return new Workspace(json().copy());
     }
+
+    /**
+     * Workspaces are kept per user and pipeline, so builds of the same pipeline reuse the checkout on a node.
+     */
+    public static String workspaceID(String userID, String pipelineID) {
+        return userID + "_" + pipelineID;
+    }
 }
@@ -106,6 +106,28 @@ public class RepositoryValidator extends BasicValidator<Repository> {
         validateString(errors, entity.getRemote(), "Specify the remote name.");
         validateString(errors, entity.getBranch(), "Specify the remote branch.");
 
+        // These are passed to the git command line, where a leading dash would make them an option.
+        validateNotOption(errors, entity.getUri(), "Git url cannot start with '-'.");
+        validateNotOption(errors, entity.getRemote(), "Remote name cannot start with '-'.");
+        validateNotOption(errors, entity.getBranch(), "Remote branch cannot start with '-'.");
+
+        if (entity.getCloneDepth() < 0) {
+            errors.add("Clone depth cannot be negative.");
+        }
+
+        JsonArray sparsePaths = entity.getSparsePaths();
+
+        if (sparsePaths != null) {
+            for (int s = 0; s < sparsePaths.size(); s++) {
+                if (StringUtils.isBlank(sparsePaths.getString(s))) {
+                    errors.add("Sparse path cannot be empty. Index: " + s);
+
+                } else {
+                    validateNotOption(errors, sparsePaths.getString(s), "Sparse path cannot start with '-'. Index: " + s);
+                }
+            }
+        }
+
         if (entity.json().containsKey(CHILDREN)) {
             errors.add("Child repositories are not allowed.");
         }
@@ -168,6 +190,12 @@ public class RepositoryValidator extends BasicValidator<Repository> {
         validatePerforce(childRepo, errors);
     }
 
+    private static void validateNotOption(List<String> errors, String value, String error) {
+        if (value != null && value.trim().startsWith("-")) {
+            errors.add(error);
+        }
+    }
+
     private boolean validateMulti(Repository entity, List<String> errors) {
         try {
             JsonArray children = entity.getChildren();
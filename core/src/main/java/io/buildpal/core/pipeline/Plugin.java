@@ -17,6 +17,7 @@
 package io.buildpal.core.pipeline;
 
 import io.buildpal.core.pipeline.event.CommandKey;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
@@ -28,12 +29,20 @@ import io.vertx.core.logging.Logger;
 
 import java.util.Set;
 
+/**
+ * Base class of the verticles that take part in a pipeline flow.
+ *
+ * Commands are delivered without copying (see {@link EventCodec}): handlers must not modify the build they
+ * receive, and events should be sent with {@link EventCodec#OPTIONS} and not modified after sending.
+ */
 public abstract class Plugin extends AbstractVerticle {
 
     @Override
     public void start(Future<Void> startFuture) throws Exception {
         start();
 
+        EventCodec.register(getVertx());
+
         EventBus eb = getVertx().eventBus();
 
         for (CommandKey key : commandKeysToRegister()) {
@@ -70,21 +79,21 @@ public abstract class Plugin extends AbstractVerticle {
     protected Handler<Message<JsonObject>> setupHandler(EventBus eb) {
         return mh -> {
             getLogger().info(mh.body());
-            eb.send(EventKey.SETUP_END.getAddress(), mh.body());
+            eb.send(EventKey.SETUP_END.getAddress(), mh.body(), EventCodec.OPTIONS);
         };
     }
 
     protected Handler<Message<JsonObject>> phaseHandler(EventBus eb) {
         return mh -> {
             getLogger().info(mh.body());
-            eb.send(EventKey.PHASE_END.getAddress(), mh.body());
+            eb.send(EventKey.PHASE_END.getAddress(), mh.body(), EventCodec.OPTIONS);
         };
     }
 
     protected Handler<Message<JsonObject>> tearDownHandler(EventBus eb) {
         return mh -> {
             getLogger().info(mh.body());
-            eb.send(EventKey.TEAR_DOWN_END.getAddress(), mh.body());
+            eb.send(EventKey.TEAR_DOWN_END.getAddress(), mh.body(), EventCodec.OPTIONS);
         };
     }
 }
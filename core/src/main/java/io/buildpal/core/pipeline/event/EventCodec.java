@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.pipeline.event;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Codec for {@link Command} and {@link Event} payloads exchanged between the engine and the plugins.
+ *
+ * The default JSON codec copies the payload on every local delivery, which means a full copy of the build
+ * for every plugin hop. This codec passes the payload through as is, so the sender must not modify it after
+ * sending it and the receivers must treat the build as read-only. On the wire, payloads are written as
+ * length prefixed UTF-8 JSON.
+ */
+public class EventCodec implements MessageCodec<JsonObject, JsonObject> {
+    public static final String NAME = "buildpal.event";
+
+    public static final DeliveryOptions OPTIONS = new DeliveryOptions().setCodecName(NAME);
+
+    /**
+     * Registers the codec with the event bus, if not registered already.
+     */
+    public static synchronized void register(Vertx vertx) {
+        try {
+            vertx.eventBus().registerCodec(new EventCodec());
+
+        } catch (IllegalStateException ignore) {
+            // Already registered by another verticle.
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, JsonObject jsonObject) {
+        Buffer encoded = jsonObject.toBuffer();
+
+        buffer.appendInt(encoded.length());
+        buffer.appendBuffer(encoded);
+    }
+
+    @Override
+    public JsonObject decodeFromWire(int pos, Buffer buffer) {
+        int length = buffer.getInt(pos);
+        pos += 4;
+
+        return new JsonObject(buffer.slice(pos, pos + length));
+    }
+
+    @Override
+    public JsonObject transform(JsonObject jsonObject) {
+        return jsonObject;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query;
+
+import io.buildpal.core.query.index.HashIndex;
+import io.buildpal.core.query.index.Index;
+import io.buildpal.core.query.index.Indexes;
+import io.buildpal.core.query.index.SortedIndex;
+import io.vertx.core.json.JsonObject;
+
+import io.vertx.core.json.JsonArray;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A compiled query. Filters are immutable, so a compiled query can be cached and shared across threads.
+ *
+ * Filters work on the maps backing the items. Attribute paths are split into keys when the query is compiled
+ * and resolved against nested maps directly, so evaluating an item doesn't allocate.
+ */
+abstract class Filter implements Predicate<JsonObject> {
+
+    @Override
+    public boolean test(JsonObject item) {
+        return matches(item.getMap());
+    }
+
+    abstract boolean matches(Map<String, Object> item);
+
+    /**
+     * Uses the secondary indexes of a collection to find the IDs of the items that may satisfy this filter.
+     * The filter still has to be tested on each of them.
+     *
+     * @return IDs of the candidate items or null if the indexes can't narrow down this filter.
+     */
+    Set<String> candidates(Indexes indexes) {
+        return null;
+    }
+
+    static class And extends Filter {
+        private final Filter left;
+        private final Filter right;
+
+        And(Filter left, Filter right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            return left.matches(item) && right.matches(item);
+        }
+
+        @Override
+        Set<String> candidates(Indexes indexes) {
+            Set<String> leftIDs = left.candidates(indexes);
+            Set<String> rightIDs = right.candidates(indexes);
+
+            if (leftIDs == null) return rightIDs;
+            if (rightIDs == null) return leftIDs;
+
+            Set<String> smaller = leftIDs.size() <= rightIDs.size() ? leftIDs : rightIDs;
+            Set<String> larger = smaller == leftIDs ? rightIDs : leftIDs;
+
+            Set<String> ids = new HashSet<>();
+
+            for (String id : smaller) {
+                if (larger.contains(id)) ids.add(id);
+            }
+
+            return ids;
+        }
+    }
+
+    static class Or extends Filter {
+        private final Filter left;
+        private final Filter right;
+
+        Or(Filter left, Filter right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            return left.matches(item) || right.matches(item);
+        }
+
+        @Override
+        Set<String> candidates(Indexes indexes) {
+            Set<String> leftIDs = left.candidates(indexes);
+            if (leftIDs == null) return null;
+
+            Set<String> rightIDs = right.candidates(indexes);
+            if (rightIDs == null) return null;
+
+            Set<String> ids = new HashSet<>(leftIDs);
+            ids.addAll(rightIDs);
+
+            return ids;
+        }
+    }
+
+    static class Not extends Filter {
+        private final Filter filter;
+
+        Not(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            return !filter.matches(item);
+        }
+    }
+
+    static class Present extends Filter {
+        private final String[] path;
+
+        Present(String[] path) {
+            this.path = path;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            return resolve(item, path) != null;
+        }
+    }
+
+    static class Compare extends Filter {
+        private final String[] path;
+        private final int op;
+        private final Object literal;
+        private final Predicate<Object> predicate;
+
+        Compare(String[] path, int op, Object literal, Predicate<Object> predicate) {
+            this.path = path;
+            this.op = op;
+            this.literal = literal;
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            return predicate.test(resolve(item, path));
+        }
+
+        @Override
+        Set<String> candidates(Indexes indexes) {
+            // Indexes only cover top level attributes.
+            if (path.length > 1) return null;
+
+            Index index = indexes.get(path[0]);
+
+            if (index instanceof HashIndex) {
+                return op == QueryParser.EQ && literal instanceof String ?
+                        ((HashIndex) index).get((String) literal) : null;
+
+            } else if (index instanceof SortedIndex && literal instanceof Instant) {
+                return range((SortedIndex) index, (Instant) literal);
+            }
+
+            return null;
+        }
+
+        private Set<String> range(SortedIndex index, Instant instant) {
+            switch (op) {
+                case QueryParser.EQ:
+                    return index.range(instant, true, instant, true);
+
+                case QueryParser.GT:
+                    return index.range(instant, false, null, false);
+
+                case QueryParser.GE:
+                    return index.range(instant, true, null, false);
+
+                case QueryParser.LT:
+                    return index.range(null, false, instant, false);
+
+                case QueryParser.LE:
+                    return index.range(null, false, instant, true);
+
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Matches items where at least one element of an array attribute satisfies the element filter,
+     * e.g. phases[status eq "FAILED"].
+     */
+    static class Any extends Filter {
+        private final String[] path;
+        private final Filter filter;
+
+        Any(String[] path, Filter filter) {
+            this.path = path;
+            this.filter = filter;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> item) {
+            Object value = resolve(item, path);
+
+            if (value instanceof JsonArray) {
+                value = ((JsonArray) value).getList();
+            }
+
+            if (!(value instanceof List)) return false;
+
+            List list = (List) value;
+
+            for (int e=0; e<list.size(); e++) {
+                Map<String, Object> element = asMap(list.get(e));
+
+                if (element != null && filter.matches(element)) return true;
+            }
+
+            return false;
+        }
+    }
+
+    static Object resolve(Map<String, Object> item, String[] path) {
+        Object value = item.get(path[0]);
+
+        for (int k=1; k<path.length && value != null; k++) {
+            Map<String, Object> map = asMap(value);
+            value = map == null ? null : map.get(path[k]);
+        }
+
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (value instanceof JsonObject) return ((JsonObject) value).getMap();
+        if (value instanceof Map) return (Map<String, Object>) value;
+
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.buildpal.core.domain.Entity.ID;
+
+/**
+ * Selects a subset of the attributes of an entity, e.g. "fields=name,status,pipeline.name,phases.status".
+ *
+ * Nested paths select attributes of sub objects and of every object in an array. The ID is always
+ * included. Projected objects share the selected values with the source entity instead of copying them.
+ */
+public class Projection {
+
+    private final Map<String, Projection> fields = new LinkedHashMap<>();
+
+    private Projection() {}
+
+    /**
+     * Parses comma separated attribute paths. Returns null when no fields are selected.
+     */
+    public static Projection tryParse(List<String> rawFields) {
+        Projection projection = new Projection();
+
+        for (String rawField : rawFields) {
+            for (String field : rawField.split(",")) {
+                field = field.trim();
+
+                if (!field.isEmpty()) projection.add(field.split("\\."), 0);
+            }
+        }
+
+        if (projection.fields.isEmpty()) return null;
+
+        projection.fields.putIfAbsent(ID, null);
+
+        return projection;
+    }
+
+    private void add(String[] path, int index) {
+        String key = path[index];
+
+        if (index == path.length - 1) {
+            // Selecting an attribute selects all of it.
+            fields.put(key, null);
+
+        } else if (!fields.containsKey(key) || fields.get(key) != null) {
+            Projection sub = fields.computeIfAbsent(key, k -> new Projection());
+            sub.add(path, index + 1);
+        }
+    }
+
+    public JsonObject apply(JsonObject entity) {
+        return new JsonObject(apply(entity.getMap()));
+    }
+
+    Map<String, Object> apply(Map<String, Object> entity) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Projection> field : fields.entrySet()) {
+            Object value = entity.get(field.getKey());
+
+            Projection sub = field.getValue();
+            if (sub != null && value != null) value = sub.applyValue(value);
+
+            if (value != null) projected.put(field.getKey(), value);
+        }
+
+        return projected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object applyValue(Object value) {
+        if (value instanceof JsonObject) {
+            return apply(((JsonObject) value).getMap());
+
+        } else if (value instanceof Map) {
+            return apply((Map<String, Object>) value);
+
+        } else if (value instanceof JsonArray || value instanceof List) {
+            List<Object> list = value instanceof JsonArray ? ((JsonArray) value).getList() : (List<Object>) value;
+            List<Object> projected = new ArrayList<>(list.size());
+
+            for (Object element : list) {
+                projected.add(applyValue(element));
+            }
+
+            return projected;
+
+        } else {
+            // Scalars don't have sub attributes.
+            return null;
+        }
+    }
+}
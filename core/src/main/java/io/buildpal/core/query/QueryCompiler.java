@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query;
+
+import io.buildpal.core.query.operation.BooleanOperation;
+import io.buildpal.core.query.operation.DoubleOperation;
+import io.buildpal.core.query.operation.InstantOperation;
+import io.buildpal.core.query.operation.LongOperation;
+import io.buildpal.core.query.operation.NullOperation;
+import io.buildpal.core.query.operation.Operation;
+import io.buildpal.core.query.operation.StringOperation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+
+/**
+ * Compiles a parsed query into a tree of {@link Filter}s. Literals are resolved here, once per query,
+ * instead of once per evaluated item.
+ */
+class QueryCompiler extends QueryBaseVisitor<Filter> {
+
+    private static final String AND = "and";
+
+    @Override
+    public Filter visitParenExp(QueryParser.ParenExpContext ctx) {
+        Filter filter = visit(ctx.filter());
+        return ctx.NOT() != null ? new Filter.Not(filter) : filter;
+    }
+
+    @Override
+    public Filter visitLogicalExp(QueryParser.LogicalExpContext ctx) {
+        Filter left = visit(ctx.filter(0));
+        Filter right = visit(ctx.filter(1));
+
+        return AND.equals(ctx.LOGICAL_OPERATOR().getText()) ?
+                new Filter.And(left, right) : new Filter.Or(left, right);
+    }
+
+    @Override
+    public Filter visitPresentExp(QueryParser.PresentExpContext ctx) {
+        return new Filter.Present(path(ctx.attrPath()));
+    }
+
+    @Override
+    public Filter visitValuePathExp(QueryParser.ValuePathExpContext ctx) {
+        return new Filter.Any(path(ctx.attrPath()), visit(ctx.filter()));
+    }
+
+    @Override
+    public Filter visitCompareExp(QueryParser.CompareExpContext ctx) {
+        String[] path = path(ctx.attrPath());
+        int op = ctx.op.getType();
+        QueryParser.ValueContext value = ctx.value();
+
+        if (value instanceof QueryParser.StringContext) {
+            String literal = unquote(value.getText());
+            return new Filter.Compare(path, op, literal, compile(StringOperation.SELF, op, literal));
+
+        } else if (value instanceof QueryParser.LongContext) {
+            Long literal = Long.parseLong(value.getText());
+            return new Filter.Compare(path, op, literal, compile(LongOperation.SELF, op, literal));
+
+        } else if (value instanceof QueryParser.DoubleContext) {
+            Double literal = Double.parseDouble(value.getText());
+            return new Filter.Compare(path, op, literal, compile(DoubleOperation.SELF, op, literal));
+
+        } else if (value instanceof QueryParser.BooleanContext) {
+            Boolean literal = Boolean.parseBoolean(value.getText());
+            return new Filter.Compare(path, op, literal, compile(BooleanOperation.SELF, op, literal));
+
+        } else if (value instanceof QueryParser.InstantContext) {
+            Instant literal = instant(value.getText());
+            return new Filter.Compare(path, op, literal, compile(InstantOperation.SELF, op, literal));
+
+        } else if (value instanceof QueryParser.NullContext) {
+            return new Filter.Compare(path, op, null, compile(NullOperation.SELF, op, null));
+        }
+
+        throw new IllegalStateException("Unsupported value detected.");
+    }
+
+    private <T> Predicate<Object> compile(Operation<T> operation, int op, T literal) {
+        switch (op) {
+            case QueryParser.EQ:
+                return operation.eq(literal);
+
+            case QueryParser.NE:
+                return operation.ne(literal);
+
+            case QueryParser.GT:
+                return operation.gt(literal);
+
+            case QueryParser.LT:
+                return operation.lt(literal);
+
+            case QueryParser.GE:
+                return operation.ge(literal);
+
+            case QueryParser.LE:
+                return operation.le(literal);
+
+            case QueryParser.CO:
+                return operation.co(literal);
+
+            case QueryParser.SW:
+                return operation.sw(literal);
+
+            case QueryParser.EW:
+                return operation.ew(literal);
+
+            default:
+                throw new IllegalStateException("Unsupported operator detected.");
+        }
+    }
+
+    /**
+     * Splits an attribute path like "a.b.c" into its keys.
+     */
+    private String[] path(QueryParser.AttrPathContext ctx) {
+        List<String> keys = new ArrayList<>();
+
+        for (QueryParser.AttrPathContext path = ctx; path != null;
+             path = path.subAttr() != null ? path.subAttr().attrPath() : null) {
+
+            keys.add(path.ATTRNAME().getText());
+        }
+
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    private static String unquote(String text) {
+        // Remove quotes. At a minimum the string length will be 2 (two quotes).
+        return text.length() > 2 ? text.substring(1, text.length() - 1) : "";
+    }
+
+    private static Instant instant(String text) {
+        if (text.length() <= 3) {
+            throw new IllegalArgumentException("Instant value is empty.");
+        }
+
+        // Remove the leading "i" and quotes.
+        return Instant.from(ISO_INSTANT.parse(text.substring(2, text.length() - 1)));
+    }
+}
@@ -16,6 +16,7 @@
 
 package io.buildpal.core.query;
 
+import io.buildpal.core.query.index.Indexes;
 import io.buildpal.core.query.sort.Sort;
 import io.buildpal.core.query.sort.Sorter;
 import io.vertx.core.json.JsonObject;
@@ -28,70 +29,226 @@ import org.antlr.v4.runtime.tree.ParseTree;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static io.buildpal.core.config.Constants.COMMA;
+import static io.buildpal.core.domain.Entity.ID;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
 
 public class QueryEngine {
     private static final Logger logger = LoggerFactory.getLogger(QueryEngine.class);
 
+    private static final Comparator<JsonObject> BY_ID = Comparator.comparing(jo -> jo.getString(ID, EMPTY));
+
+    private static final int CACHE_SIZE = 256;
+
+    // Compiled queries by query text. The UI and the scavenger send the same few queries over and over.
+    private static final Map<String, Filter> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Filter>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
     public static List<JsonObject> run(QuerySpec querySpec, List<JsonObject> items) {
         if (querySpec == null || items == null || items.isEmpty()) return items;
 
+        Predicate<JsonObject> filter = filter(querySpec);
+        List<Sort> sorts = querySpec.getSorts();
+
+        if (querySpec.getAfter() != null) {
+            return after(querySpec, sorts, filter, items);
+        }
+
+        if (querySpec.shouldPaginate()) {
+            Comparator<JsonObject> comparator = sorts.isEmpty() ? null : comparator(sorts, items.get(0));
+            return top(comparator, filter, items, querySpec.begin(), querySpec.end());
+        }
+
         List<JsonObject> filteredItems;
 
-        // Filter items based on the query.
         if (StringUtils.isNotBlank(querySpec.getQuery())) {
             filteredItems = new ArrayList<>();
 
-            CharStream stream = CharStreams.fromString(querySpec.getQuery().trim());
+            // Loop through the list and evaluate the query.
+            for (JsonObject item : items) {
+                if (filter.test(item)) {
+                    filteredItems.add(item);
+                }
+            }
+
+        } else {
+            filteredItems = items;
+        }
+
+        if (!sorts.isEmpty() && !filteredItems.isEmpty()) {
+            filteredItems.sort(new Sorter(sorts, filteredItems.get(0)).comparator());
+        }
+
+        return filteredItems;
+    }
+
+    /**
+     * Uses the secondary indexes of a collection to find the IDs of the items that may satisfy the query.
+     *
+     * @return IDs of the candidate items or null if the indexes can't narrow down the query.
+     */
+    public static Set<String> candidates(QuerySpec querySpec, Indexes indexes) {
+        if (querySpec == null || indexes == null || indexes.isEmpty() ||
+                StringUtils.isBlank(querySpec.getQuery())) return null;
+
+        return compile(querySpec.getQuery()).candidates(indexes);
+    }
+
+    static Filter compile(String query) {
+        String key = query.trim();
+        Filter filter = cache.get(key);
+
+        if (filter == null) {
+            CharStream stream = CharStreams.fromString(key);
             QueryLexer lexer = new QueryLexer(stream);
             CommonTokenStream tokens = new CommonTokenStream(lexer);
             QueryParser parser = new QueryParser(tokens);
 
             ParseTree parseTree = parser.filter();
-            QueryEvaluator evaluator = new QueryEvaluator();
+            filter = new QueryCompiler().visit(parseTree);
+
+            cache.put(key, filter);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Compiled query: " + key);
+            }
+        }
+
+        return filter;
+    }
+
+    private static Predicate<JsonObject> filter(QuerySpec querySpec) {
+        if (StringUtils.isBlank(querySpec.getQuery())) return item -> true;
+
+        return compile(querySpec.getQuery());
+    }
+
+    /**
+     * Returns the items between begin and end in sort order without sorting all of them. Only the best "end"
+     * items are kept in a bounded heap while scanning.
+     *
+     * @param comparator sort order or null to keep the order of the items.
+     */
+    private static List<JsonObject> top(Comparator<JsonObject> comparator, Predicate<JsonObject> filter,
+                                        List<JsonObject> items, int begin, int end) {
+
+        if (comparator == null) {
+            // Items keep their order, so the scan stops as soon as the page is filled.
+            List<JsonObject> pageOfItems = new ArrayList<>();
+            int matches = 0;
 
-            // Loop through the list and evaluate the query.
             for (JsonObject item : items) {
-                if (evaluator.setCurrentItem(item).visit(parseTree)) {
-                    filteredItems.add(item);
+                if (matches >= end) break;
+
+                if (filter.test(item) && matches++ >= begin) {
+                    pageOfItems.add(item);
                 }
             }
 
-        } else {
-            filteredItems = items;
+            return pageOfItems;
         }
 
-        sort(querySpec, filteredItems);
+        // The head of the heap is the worst of the items kept so far.
+        PriorityQueue<JsonObject> heap = new PriorityQueue<>(Math.min(end, items.size()) + 1, comparator.reversed());
+
+        for (JsonObject item : items) {
+            if (!filter.test(item)) continue;
+
+            if (heap.size() < end) {
+                heap.add(item);
+
+            } else if (comparator.compare(item, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        }
 
-        return paginate(querySpec, filteredItems);
+        if (heap.size() <= begin) return new ArrayList<>();
+
+        List<JsonObject> topItems = new ArrayList<>(heap);
+        topItems.sort(comparator);
+
+        return new ArrayList<>(topItems.subList(begin, topItems.size()));
     }
 
-    private static void sort(QuerySpec querySpec, List<JsonObject> items) {
-        if (items == null || items.isEmpty()) return;
+    /**
+     * Keyset pagination. Returns the items that sort after the cursor ("sortKeyValue,id"), so deep pages
+     * don't have to skip over all the items before them. Only the first sort is used.
+     */
+    private static List<JsonObject> after(QuerySpec querySpec, List<Sort> sorts, Predicate<JsonObject> filter,
+                                          List<JsonObject> items) {
 
-        List<Sort> sorts = querySpec.getSorts();
+        List<Sort> firstSort = sorts.isEmpty() ? sorts : Collections.singletonList(sorts.get(0));
+
+        JsonObject cursor = cursor(querySpec.getAfter(), firstSort, items.get(0));
+        Comparator<JsonObject> comparator = comparator(firstSort, items.get(0));
+
+        Predicate<JsonObject> afterCursor = filter.and(item -> comparator.compare(item, cursor) > 0);
+
+        if (querySpec.getLimit() > 0) {
+            return top(comparator, afterCursor, items, 0, querySpec.getLimit());
+        }
+
+        List<JsonObject> filteredItems = new ArrayList<>();
 
-        if (sorts.isEmpty()) return;
+        for (JsonObject item : items) {
+            if (afterCursor.test(item)) {
+                filteredItems.add(item);
+            }
+        }
+
+        filteredItems.sort(comparator);
+
+        return filteredItems;
+    }
 
-        items.sort(new Sorter(sorts, items.get(0)).comparator());
+    private static Comparator<JsonObject> comparator(List<Sort> sorts, JsonObject sample) {
+        // Ties are broken by ID, so the order is stable across pages.
+        return sorts.isEmpty() ? BY_ID : new Sorter(sorts, sample).comparator().thenComparing(BY_ID);
     }
 
-    private static List<JsonObject> paginate(QuerySpec querySpec, List<JsonObject> items) {
-        if (!querySpec.shouldPaginate()) return items;
+    private static JsonObject cursor(String after, List<Sort> sorts, JsonObject sample) {
+        int comma = after.lastIndexOf(COMMA);
+        JsonObject cursor = new JsonObject().put(ID, after.substring(comma + 1));
+
+        if (sorts.isEmpty() || comma < 0) return cursor;
 
-        int begin = querySpec.begin();
-        int end = querySpec.end();
+        String key = sorts.get(0).key();
+        String value = after.substring(0, comma);
+        Object sampleValue = sample.getValue(key);
 
-        List<JsonObject> pageOfItems = new ArrayList<>();
+        try {
+            if (sampleValue instanceof Integer) {
+                cursor.put(key, Integer.parseInt(value));
 
-        if (end > items.size()) end = items.size();
+            } else if (sampleValue instanceof Long) {
+                cursor.put(key, Long.parseLong(value));
 
-        if (items.size() < begin) return pageOfItems;
+            } else if (sampleValue instanceof Double) {
+                cursor.put(key, Double.parseDouble(value));
+
+            } else {
+                cursor.put(key, value);
+            }
 
-        for (int i=begin; i<end; i++) {
-            pageOfItems.add(items.get(i));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cursor: " + after, ex);
         }
 
-        return pageOfItems;
+        return cursor;
     }
 }
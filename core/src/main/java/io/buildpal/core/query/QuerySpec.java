@@ -28,10 +28,15 @@ public class QuerySpec {
 
     private static final List<Sort> NO_SORTS = Collections.emptyList();
 
+    // Larger limits are lowered to this. Pages are kept in memory while they are built.
+    public static final int MAX_LIMIT = 1000;
+
     private static final String QUERY = "q";
     private static final String PAGE = "page";
     private static final String LIMIT = "limit";
     private static final String SORT = "sort";
+    private static final String AFTER = "after";
+    private static final String FIELDS = "fields";
 
     private MultiMap multiMap;
 
@@ -58,7 +63,7 @@ public class QuerySpec {
     }
 
     public int getLimit() {
-        return multiMap.contains(LIMIT) ? getInteger(multiMap.get(LIMIT)) : -1;
+        return multiMap.contains(LIMIT) ? Math.min(getInteger(multiMap.get(LIMIT)), MAX_LIMIT) : -1;
     }
 
     public QuerySpec setLimit(int limit) {
@@ -78,6 +83,33 @@ public class QuerySpec {
         return this;
     }
 
+    /**
+     * Cursor for keyset pagination: "sortKeyValue,id" of the last item of the previous page, or just the ID
+     * when there is no sort. When present, the page parameter is ignored.
+     */
+    public String getAfter() {
+        return multiMap.get(AFTER);
+    }
+
+    public QuerySpec setAfter(String after) {
+        multiMap.set(AFTER, after);
+
+        return this;
+    }
+
+    /**
+     * Projection from the comma separated "fields" parameter, or null when whole entities are needed.
+     */
+    public Projection getProjection() {
+        return multiMap.contains(FIELDS) ? Projection.tryParse(multiMap.getAll(FIELDS)) : null;
+    }
+
+    public QuerySpec setFields(String fields) {
+        multiMap.set(FIELDS, fields);
+
+        return this;
+    }
+
     public List<Sort> getSorts() {
         if (multiMap.contains(SORT)) {
 
@@ -102,7 +134,10 @@ public class QuerySpec {
     }
 
     int begin() {
-        return begin == null ? (getPage() - 1) * getLimit() : begin;
+        if (begin != null) return begin;
+
+        // Deep pages are clamped so that the end of the page doesn't overflow.
+        return (int) Math.min((long) (getPage() - 1) * getLimit(), Integer.MAX_VALUE - MAX_LIMIT);
     }
 
     int end() {
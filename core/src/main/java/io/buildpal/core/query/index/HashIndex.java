@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query.index;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the string values of an attribute to the IDs of the items holding them. Keys are lower cased,
+ * since string equality in queries ignores case.
+ */
+public class HashIndex implements Index {
+
+    private final String attribute;
+    private final Map<String, Set<String>> ids = new ConcurrentHashMap<>();
+
+    public HashIndex(String attribute) {
+        this.attribute = attribute;
+    }
+
+    @Override
+    public String getAttribute() {
+        return attribute;
+    }
+
+    @Override
+    public void add(String id, JsonObject item) {
+        String key = key(item);
+
+        if (key != null) {
+            ids.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    @Override
+    public void remove(String id, JsonObject item) {
+        String key = key(item);
+
+        if (key != null) {
+            ids.computeIfPresent(key, (k, v) -> {
+                v.remove(id);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    public Set<String> get(String value) {
+        return ids.getOrDefault(value.toLowerCase(), Collections.emptySet());
+    }
+
+    private String key(JsonObject item) {
+        Object value = item.getValue(attribute);
+        return value instanceof String || value instanceof Enum ? value.toString().toLowerCase() : null;
+    }
+}
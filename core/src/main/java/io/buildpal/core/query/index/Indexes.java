@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query.index;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The secondary indexes of a collection. Configured as:
+ * <pre>{ "hash": ["status", "createdBy"], "sorted": ["utcCreatedDate"] }</pre>
+ */
+public class Indexes {
+
+    public static final String HASH = "hash";
+    public static final String SORTED = "sorted";
+
+    private final Map<String, Index> indexes = new HashMap<>();
+
+    public Indexes(JsonObject config) {
+        JsonArray hash = config.getJsonArray(HASH, new JsonArray());
+        JsonArray sorted = config.getJsonArray(SORTED, new JsonArray());
+
+        for (int h=0; h<hash.size(); h++) {
+            add(new HashIndex(hash.getString(h)));
+        }
+
+        for (int s=0; s<sorted.size(); s++) {
+            add(new SortedIndex(sorted.getString(s)));
+        }
+    }
+
+    public Indexes add(Index index) {
+        indexes.put(index.getAttribute(), index);
+        return this;
+    }
+
+    public Index get(String attribute) {
+        return indexes.get(attribute);
+    }
+
+    public boolean isEmpty() {
+        return indexes.isEmpty();
+    }
+
+    public void add(String id, JsonObject item) {
+        indexes.values().forEach(index -> index.add(id, item));
+    }
+
+    public void remove(String id, JsonObject item) {
+        indexes.values().forEach(index -> index.remove(id, item));
+    }
+
+    public void replace(String id, JsonObject oldItem, JsonObject newItem) {
+        if (oldItem != null) {
+            remove(id, oldItem);
+        }
+
+        add(id, newItem);
+    }
+}
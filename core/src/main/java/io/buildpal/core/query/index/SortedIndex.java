@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query.index;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+
+/**
+ * Keeps the IDs of items ordered by an instant attribute, so range queries on dates don't need a full scan.
+ */
+public class SortedIndex implements Index {
+
+    private final String attribute;
+    private final NavigableMap<Instant, Set<String>> ids = new ConcurrentSkipListMap<>();
+
+    public SortedIndex(String attribute) {
+        this.attribute = attribute;
+    }
+
+    @Override
+    public String getAttribute() {
+        return attribute;
+    }
+
+    @Override
+    public void add(String id, JsonObject item) {
+        Instant key = key(item);
+
+        if (key != null) {
+            ids.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    @Override
+    public void remove(String id, JsonObject item) {
+        Instant key = key(item);
+
+        if (key != null) {
+            ids.computeIfPresent(key, (k, v) -> {
+                v.remove(id);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    /**
+     * @param from lower bound or null if the range is open at the bottom.
+     * @param to upper bound or null if the range is open at the top.
+     */
+    public Set<String> range(Instant from, boolean fromInclusive, Instant to, boolean toInclusive) {
+        NavigableMap<Instant, Set<String>> range = ids;
+
+        if (from != null) {
+            range = range.tailMap(from, fromInclusive);
+        }
+
+        if (to != null) {
+            range = range.headMap(to, toInclusive);
+        }
+
+        Set<String> result = new HashSet<>();
+        range.values().forEach(result::addAll);
+
+        return result;
+    }
+
+    private Instant key(JsonObject item) {
+        Object value = item.getValue(attribute);
+
+        if (value instanceof String) {
+            try {
+                return Instant.from(ISO_INSTANT.parse((String) value));
+
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+}
@@ -16,47 +16,47 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public class BooleanOperation implements Operation {
+public class BooleanOperation implements Operation<Boolean> {
 
     private BooleanOperation() {}
 
     public static final BooleanOperation SELF = new BooleanOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        return leftOperand.getValue() == rightOperand.getBoolValue();
+    public Predicate<Object> eq(Boolean literal) {
+        return value -> literal.equals(value);
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        return leftOperand.getValue() != rightOperand.getBoolValue();
+    public Predicate<Object> ne(Boolean literal) {
+        return value -> !literal.equals(value);
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> gt(Boolean literal) {
         throw new UnsupportedOperationException("gt is not a supported operator on booleans.");
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> lt(Boolean literal) {
         throw new UnsupportedOperationException("lt is not a supported operator on booleans.");
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ge(Boolean literal) {
         throw new UnsupportedOperationException("ge is not a supported operator on booleans.");
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> le(Boolean literal) {
         throw new UnsupportedOperationException("le is not a supported operator on booleans.");
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> co(Boolean literal) {
         throw new UnsupportedOperationException("co is not a supported operator on booleans.");
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> sw(Boolean literal) {
         throw new UnsupportedOperationException("sw is not a supported operator on booleans.");
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ew(Boolean literal) {
         throw new UnsupportedOperationException("ew is not a supported operator on booleans.");
     }
 }
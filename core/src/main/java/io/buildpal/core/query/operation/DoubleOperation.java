@@ -16,59 +16,53 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public class DoubleOperation implements Operation {
+public class DoubleOperation implements Operation<Double> {
 
     private DoubleOperation() {}
 
     public static final DoubleOperation SELF = new DoubleOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toDouble().equals(rightOperand.getDoubleValue());
+    public Predicate<Object> eq(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() == l;
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return !leftOperand.toDouble().equals(rightOperand.getDoubleValue());
+    public Predicate<Object> ne(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() != l;
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toDouble() > rightOperand.getDoubleValue();
+    public Predicate<Object> gt(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() > l;
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toDouble() < rightOperand.getDoubleValue();
+    public Predicate<Object> lt(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() < l;
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toDouble() >= rightOperand.getDoubleValue();
+    public Predicate<Object> ge(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() >= l;
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toDouble() <= rightOperand.getDoubleValue();
+    public Predicate<Object> le(Double literal) {
+        double l = literal;
+        return value -> value instanceof Number && ((Number) value).doubleValue() <= l;
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> co(Double literal) {
         throw new UnsupportedOperationException("co is not a supported operator on double.");
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> sw(Double literal) {
         throw new UnsupportedOperationException("sw is not a supported operator on double.");
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ew(Double literal) {
         throw new UnsupportedOperationException("ew is not a supported operator on double.");
     }
 }
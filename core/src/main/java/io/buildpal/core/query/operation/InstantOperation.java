@@ -16,70 +16,84 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
-
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.function.Predicate;
+
+import static java.time.format.DateTimeFormatter.ISO_INSTANT;
 
-public class InstantOperation implements Operation {
+public class InstantOperation implements Operation<Instant> {
 
     private InstantOperation() {}
 
     public static final InstantOperation SELF = new InstantOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toInstant().equals(rightOperand.getInstantValue());
+    public Predicate<Object> eq(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && instant.equals(literal);
+        };
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return !leftOperand.toInstant().equals(rightOperand.getInstantValue());
+    public Predicate<Object> ne(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && !instant.equals(literal);
+        };
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toInstant().isAfter(rightOperand.getInstantValue());
+    public Predicate<Object> gt(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && instant.isAfter(literal);
+        };
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toInstant().isBefore(rightOperand.getInstantValue());
+    public Predicate<Object> lt(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && instant.isBefore(literal);
+        };
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        Instant left = leftOperand.toInstant();
-
-        boolean isEqual = left.equals(rightOperand.getInstantValue());
-
-        return isEqual || left.isAfter(rightOperand.getInstantValue());
+    public Predicate<Object> ge(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && !instant.isBefore(literal);
+        };
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        Instant left = leftOperand.toInstant();
-
-        boolean isEqual = left.equals(rightOperand.getInstantValue());
-
-        return isEqual || left.isBefore(rightOperand.getInstantValue());
+    public Predicate<Object> le(Instant literal) {
+        return value -> {
+            Instant instant = toInstant(value);
+            return instant != null && !instant.isAfter(literal);
+        };
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> co(Instant literal) {
         throw new UnsupportedOperationException("co is not a supported operator on instant.");
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> sw(Instant literal) {
         throw new UnsupportedOperationException("sw is not a supported operator on instant.");
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ew(Instant literal) {
         throw new UnsupportedOperationException("ew is not a supported operator on instant.");
     }
-}
 
+    public static Instant toInstant(Object value) {
+        if (value instanceof Instant) return (Instant) value;
+
+        if (value instanceof String) {
+            try {
+                return Instant.from(ISO_INSTANT.parse((String) value));
+
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+}
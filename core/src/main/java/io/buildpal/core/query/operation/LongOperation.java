@@ -16,59 +16,53 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public class LongOperation implements Operation {
+public class LongOperation implements Operation<Long> {
 
     private LongOperation() {}
 
     public static final LongOperation SELF = new LongOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toLong().equals(rightOperand.getLongValue());
+    public Predicate<Object> eq(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() == l;
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return !leftOperand.toLong().equals(rightOperand.getLongValue());
+    public Predicate<Object> ne(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() != l;
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toLong() > rightOperand.getLongValue();
+    public Predicate<Object> gt(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() > l;
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toLong() < rightOperand.getLongValue();
+    public Predicate<Object> lt(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() < l;
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toLong() >= rightOperand.getLongValue();
+    public Predicate<Object> ge(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() >= l;
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return leftOperand.toLong() <= rightOperand.getLongValue();
+    public Predicate<Object> le(Long literal) {
+        long l = literal;
+        return value -> value instanceof Number && ((Number) value).longValue() <= l;
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> co(Long literal) {
         throw new UnsupportedOperationException("co is not a supported operator on long.");
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> sw(Long literal) {
         throw new UnsupportedOperationException("sw is not a supported operator on long.");
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ew(Long literal) {
         throw new UnsupportedOperationException("ew is not a supported operator on long.");
     }
 }
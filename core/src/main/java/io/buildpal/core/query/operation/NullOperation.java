@@ -16,47 +16,47 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public class NullOperation implements Operation {
+public class NullOperation implements Operation<Object> {
 
     private NullOperation() {}
 
     public static final NullOperation SELF = new NullOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        return leftOperand.getValue() == null;
+    public Predicate<Object> eq(Object literal) {
+        return value -> value == null;
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        return leftOperand.getValue() != null;
+    public Predicate<Object> ne(Object literal) {
+        return value -> value != null;
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> gt(Object literal) {
         throw new UnsupportedOperationException("gt is not a supported operator on nulls.");
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> lt(Object literal) {
         throw new UnsupportedOperationException("lt is not a supported operator on nulls.");
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ge(Object literal) {
         throw new UnsupportedOperationException("ge is not a supported operator on nulls.");
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> le(Object literal) {
         throw new UnsupportedOperationException("le is not a supported operator on nulls.");
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> co(Object literal) {
         throw new UnsupportedOperationException("co is not a supported operator on nulls.");
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> sw(Object literal) {
         throw new UnsupportedOperationException("sw is not a supported operator on nulls.");
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
+    public Predicate<Object> ew(Object literal) {
         throw new UnsupportedOperationException("ew is not a supported operator on nulls.");
     }
 }
@@ -16,25 +16,28 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public interface Operation {
-
-    Boolean eq(Operand leftOperand, Operand rightOperand);
+/**
+ * Compiles comparison operators against a literal into predicates on attribute values.
+ * The literal is resolved once, when the query is compiled.
+ */
+public interface Operation<T> {
+    Predicate<Object> eq(T literal);
 
-    Boolean ne(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> ne(T literal);
 
-    Boolean gt(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> gt(T literal);
 
-    Boolean lt(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> lt(T literal);
 
-    Boolean ge(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> ge(T literal);
 
-    Boolean le(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> le(T literal);
 
-    Boolean co(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> co(T literal);
 
-    Boolean sw(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> sw(T literal);
 
-    Boolean ew(Operand leftOperand, Operand rightOperand);
+    Predicate<Object> ew(T literal);
 }
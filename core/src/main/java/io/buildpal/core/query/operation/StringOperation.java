@@ -16,65 +16,47 @@
 
 package io.buildpal.core.query.operation;
 
-import io.buildpal.core.query.operand.Operand;
+import java.util.function.Predicate;
 
-public class StringOperation implements Operation {
+public class StringOperation implements Operation<String> {
 
     private StringOperation() {}
 
     public static final StringOperation SELF = new StringOperation();
 
-    public Boolean eq(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).equalsIgnoreCase(rightOperand.getStrValue());
+    public Predicate<Object> eq(String literal) {
+        return value -> value instanceof String && ((String) value).equalsIgnoreCase(literal);
     }
 
-    public Boolean ne(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return !((String) leftOperand.getValue()).equalsIgnoreCase(rightOperand.getStrValue());
+    public Predicate<Object> ne(String literal) {
+        return value -> value instanceof String && !((String) value).equalsIgnoreCase(literal);
     }
 
-    public Boolean gt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).compareToIgnoreCase(rightOperand.getStrValue()) > 0;
+    public Predicate<Object> gt(String literal) {
+        return value -> value instanceof String && ((String) value).compareToIgnoreCase(literal) > 0;
     }
 
-    public Boolean lt(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).compareToIgnoreCase(rightOperand.getStrValue()) < 0;
+    public Predicate<Object> lt(String literal) {
+        return value -> value instanceof String && ((String) value).compareToIgnoreCase(literal) < 0;
     }
 
-    public Boolean ge(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).compareToIgnoreCase(rightOperand.getStrValue()) >= 0;
+    public Predicate<Object> ge(String literal) {
+        return value -> value instanceof String && ((String) value).compareToIgnoreCase(literal) >= 0;
     }
 
-    public Boolean le(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).compareToIgnoreCase(rightOperand.getStrValue()) <= 0;
+    public Predicate<Object> le(String literal) {
+        return value -> value instanceof String && ((String) value).compareToIgnoreCase(literal) <= 0;
     }
 
-    public Boolean co(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).contains(rightOperand.getStrValue());
+    public Predicate<Object> co(String literal) {
+        return value -> value instanceof String && ((String) value).contains(literal);
     }
 
-    public Boolean sw(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).startsWith(rightOperand.getStrValue());
+    public Predicate<Object> sw(String literal) {
+        return value -> value instanceof String && ((String) value).startsWith(literal);
     }
 
-    public Boolean ew(Operand leftOperand, Operand rightOperand) {
-        if (leftOperand.getValue() == null) return false;
-
-        return ((String) leftOperand.getValue()).endsWith(rightOperand.getStrValue());
+    public Predicate<Object> ew(String literal) {
+        return value -> value instanceof String && ((String) value).endsWith(literal);
     }
 }
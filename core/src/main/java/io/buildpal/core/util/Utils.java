@@ -16,10 +16,36 @@
 
 package io.buildpal.core.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 
 public class Utils {
     public static String newID() {
         return UUID.randomUUID().toString().replace("-", "");
     }
+
+    /**
+     * @return hex encoded SHA-256 of the UTF-8 bytes of the value. Stable across nodes and restarts.
+     */
+    public static String sha256(String value) {
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
 }
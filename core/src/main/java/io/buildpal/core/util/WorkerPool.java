@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
+
+/**
+ * Named worker pool for blocking work, sized from the "workerPools" config, e.g.
+ * "workerPools": { "VCS-SYNC": { "size": 5, "maxExecuteTime": 7200000, "maxQueue": 100 } }.
+ *
+ * Each kind of blocking work gets its own pool so that a slow job only holds up jobs of the same kind. Work
+ * submitted while size + maxQueue jobs are pending fails fast instead of queueing without bound.
+ *
+ * With "mode": "virtual" (per pool, or for all pools directly under "workerPools") every job gets its own thread
+ * and size becomes the number of jobs allowed to run at once. Virtual threads are used when the JVM has them,
+ * otherwise a cached pool of platform threads.
+ */
+public class WorkerPool {
+    public static final String WORKER_POOLS = "workerPools";
+
+    private static final String SIZE = "size";
+    private static final String MAX_EXECUTE_TIME = "maxExecuteTime";
+    private static final String MAX_QUEUE = "maxQueue";
+    private static final String MODE = "mode";
+    private static final String VIRTUAL = "virtual";
+
+    private final String name;
+    private final int size;
+    private final int maxQueue;
+
+    // Either the worker executor, or the thread per job executor and its permits.
+    private final WorkerExecutor workerExecutor;
+    private final ExecutorService threadPerJob;
+    private final Semaphore permits;
+
+    private final Vertx vertx;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private WorkerPool(Vertx vertx, String name, int size, long maxExecuteTime, int maxQueue, boolean virtual) {
+        this.vertx = vertx;
+        this.name = name;
+        this.size = size;
+        this.maxQueue = maxQueue;
+
+        if (virtual) {
+            workerExecutor = null;
+            threadPerJob = newThreadPerJobExecutor(name);
+            permits = new Semaphore(size, true);
+
+        } else {
+            workerExecutor = vertx.createSharedWorkerExecutor(name, size,
+                    TimeUnit.MILLISECONDS.toNanos(maxExecuteTime));
+            threadPerJob = null;
+            permits = null;
+        }
+    }
+
+    /**
+     * @param config the verticle config.
+     * @param name the pool name and its key under "workerPools".
+     */
+    public static WorkerPool create(Vertx vertx, JsonObject config, String name) {
+        JsonObject poolsConfig = config.getJsonObject(WORKER_POOLS, EMPTY_JSON);
+        JsonObject poolConfig = poolsConfig.getJsonObject(name, EMPTY_JSON);
+
+        return new WorkerPool(vertx, name,
+                poolConfig.getInteger(SIZE, 5),
+                poolConfig.getLong(MAX_EXECUTE_TIME, TimeUnit.HOURS.toMillis(2)),
+                poolConfig.getInteger(MAX_QUEUE, 100),
+                VIRTUAL.equals(poolConfig.getString(MODE, poolsConfig.getString(MODE))));
+    }
+
+    /**
+     * Runs the blocking code on this pool, unordered. The result handler is called on the caller's context.
+     */
+    public <T> void executeBlocking(Handler<Future<T>> blockingCodeHandler, Handler<AsyncResult<T>> resultHandler) {
+
+        if (maxQueue >= 0 && pending.get() >= size + maxQueue) {
+            resultHandler.handle(Future.failedFuture(
+                    new RejectedExecutionException("Too much pending work in worker pool: " + name)));
+            return;
+        }
+
+        pending.incrementAndGet();
+
+        Handler<AsyncResult<T>> done = rh -> {
+            pending.decrementAndGet();
+            resultHandler.handle(rh);
+        };
+
+        if (workerExecutor != null) {
+            workerExecutor.executeBlocking(blockingCodeHandler, false, done);
+
+        } else {
+            executeOnOwnThread(blockingCodeHandler, done);
+        }
+    }
+
+    private <T> void executeOnOwnThread(Handler<Future<T>> blockingCodeHandler, Handler<AsyncResult<T>> resultHandler) {
+        Context context = vertx.getOrCreateContext();
+
+        Future<T> future = Future.future();
+        future.setHandler(rh -> context.runOnContext(v -> resultHandler.handle(rh)));
+
+        threadPerJob.execute(() -> {
+            try {
+                permits.acquire();
+
+                try {
+                    blockingCodeHandler.handle(future);
+
+                } finally {
+                    permits.release();
+                }
+
+            } catch (Throwable t) {
+                future.tryFail(t);
+            }
+        });
+    }
+
+    private static ExecutorService newThreadPerJobExecutor(String name) {
+        try {
+            // Java 21+.
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of jobs running or waiting for a thread.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public void close() {
+        if (workerExecutor != null) {
+            workerExecutor.close();
+
+        } else {
+            threadPerJob.shutdown();
+        }
+    }
+}
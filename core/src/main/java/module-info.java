@@ -24,6 +24,7 @@ module io.buildpal.core {
     exports io.buildpal.core.process;
     exports io.buildpal.core.util;
     exports io.buildpal.core.query;
+    exports io.buildpal.core.query.index;
 
     requires vertx.core;
 
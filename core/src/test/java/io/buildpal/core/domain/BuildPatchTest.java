@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.domain;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+
+public class BuildPatchTest {
+
+    @Test
+    public void applyTest() {
+        Build build = new Build().setID("b1").setStatus(Status.IN_FLIGHT);
+        build.setPhases(new JsonArray()
+                .add(new Build.BuildPhase().setID("p1").setStatus(Status.DONE).json())
+                .add(new Build.BuildPhase().setID("p2").setStatus(Status.IN_FLIGHT).json()));
+
+        Build stored = new Build(build.json().copy());
+
+        new Build.BuildPhase(build.getPhases().getJsonObject(1))
+                .setStatus(Status.FAILED)
+                .setContainerID("c2");
+        build.markForFailure();
+
+        BuildPatch patch = BuildPatch.of(build, Set.of("p2"));
+        Assert.assertEquals("Only changed phases should be patched.", 1, patch.json().getJsonArray("phases").size());
+
+        // Patches are sent over the event bus, so apply an encoded copy.
+        new BuildPatch(patch.json().copy()).applyTo(stored);
+
+        Assert.assertEquals("Status should be patched.", Status.FAILED, stored.getStatus());
+        Assert.assertNotNull("End date should be patched.", stored.getUtcEndDate());
+
+        Build.BuildPhase phase = new Build.BuildPhase(stored.getPhases().getJsonObject(1));
+        Assert.assertEquals("Phase should be patched.", Status.FAILED, phase.getStatus());
+        Assert.assertEquals("Phase should be patched.", "c2", phase.getContainerID());
+        Assert.assertFalse("Phase index should not be stored.", phase.json().containsKey("index"));
+    }
+}
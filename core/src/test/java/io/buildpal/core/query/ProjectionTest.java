@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ProjectionTest {
+
+    @Test
+    public void applyTest() {
+        JsonObject build = new JsonObject()
+                .put("id", "b1")
+                .put("name", "Build 1")
+                .put("status", "DONE")
+                .put("data", new JsonObject().put("large", "value"))
+                .put("pipeline", new JsonObject().put("id", "p1").put("name", "Pipeline 1"))
+                .put("phases", new JsonArray()
+                        .add(new JsonObject().put("name", "build").put("status", "DONE").put("logs", "..."))
+                        .add(new JsonObject().put("name", "test").put("status", "FAILED").put("logs", "...")));
+
+        Projection projection = Projection.tryParse(Arrays.asList("name,pipeline.name", "phases.status, missing"));
+        Assert.assertNotNull("Projection should be parsed.", projection);
+
+        JsonObject projected = projection.apply(build);
+
+        Assert.assertEquals("ID should always be included.", "b1", projected.getString("id"));
+        Assert.assertEquals("Selected fields should be included.", "Build 1", projected.getString("name"));
+        Assert.assertFalse("Other fields should be excluded.", projected.containsKey("data"));
+        Assert.assertFalse("Missing fields should be excluded.", projected.containsKey("missing"));
+
+        Assert.assertEquals("Nested fields should be projected.",
+                new JsonObject().put("name", "Pipeline 1"), projected.getJsonObject("pipeline"));
+
+        JsonArray phases = projected.getJsonArray("phases");
+        Assert.assertEquals("Array elements should be projected.", 2, phases.size());
+        Assert.assertEquals("Array elements should be projected.",
+                new JsonObject().put("status", "FAILED"), phases.getJsonObject(1));
+
+        Assert.assertTrue("Source entity should not change.",
+                build.getJsonArray("phases").getJsonObject(0).containsKey("logs"));
+        Assert.assertNull("Blank fields should not project.", Projection.tryParse(Arrays.asList(" , ")));
+    }
+}
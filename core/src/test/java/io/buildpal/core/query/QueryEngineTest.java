@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.core.query;
+
+import io.buildpal.core.query.index.Indexes;
+import io.vertx.core.http.CaseInsensitiveHeaders;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static io.buildpal.core.query.index.Indexes.HASH;
+import static io.buildpal.core.query.index.Indexes.SORTED;
+
+public class QueryEngineTest {
+
+    private static List<JsonObject> builds() {
+        List<JsonObject> builds = new ArrayList<>();
+
+        for (int b=0; b<10; b++) {
+            builds.add(new JsonObject()
+                    .put("id", "b" + b)
+                    .put("status", b % 2 == 0 ? "DONE" : "FAILED")
+                    .put("pipelineID", "p" + (b % 3))
+                    .put("utcCreatedDate", String.format("2017-12-%02dT10:00:00Z", b + 1)));
+        }
+
+        return builds;
+    }
+
+    private static Indexes indexes(List<JsonObject> builds) {
+        Indexes indexes = new Indexes(new JsonObject()
+                .put(HASH, new JsonArray().add("status").add("pipelineID"))
+                .put(SORTED, new JsonArray().add("utcCreatedDate")));
+
+        builds.forEach(b -> indexes.add(b.getString("id"), b));
+
+        return indexes;
+    }
+
+    private static QuerySpec sortedByDateDesc() {
+        return new QuerySpec(new CaseInsensitiveHeaders().add("sort", "utcCreatedDate|desc|instant"));
+    }
+
+    @Test
+    public void topTest() {
+        List<JsonObject> page = QueryEngine.run(sortedByDateDesc().setPage(2).setLimit(3), builds());
+
+        Assert.assertEquals("Page should be filled.", 3, page.size());
+        Assert.assertEquals("Page should start after the first page.", "b6", page.get(0).getString("id"));
+        Assert.assertEquals("Page should be in sort order.", "b4", page.get(2).getString("id"));
+
+        page = QueryEngine.run(sortedByDateDesc().setQuery("status eq \"DONE\"").setPage(1).setLimit(2), builds());
+
+        Assert.assertEquals("Filter should apply before the page is cut.", "b8", page.get(0).getString("id"));
+        Assert.assertEquals("Filter should apply before the page is cut.", "b6", page.get(1).getString("id"));
+
+        page = QueryEngine.run(sortedByDateDesc().setPage(4).setLimit(3), builds());
+        Assert.assertEquals("Last page may be partial.", 1, page.size());
+
+        page = QueryEngine.run(sortedByDateDesc().setPage(1).setLimit(Integer.MAX_VALUE), builds());
+        Assert.assertEquals("Huge limit should be capped, not overflow.", 10, page.size());
+
+        page = QueryEngine.run(sortedByDateDesc().setPage(Integer.MAX_VALUE).setLimit(3), builds());
+        Assert.assertTrue("Page far past the end should be empty.", page.isEmpty());
+    }
+
+    @Test
+    public void noMatchTest() {
+        List<JsonObject> items = QueryEngine.run(sortedByDateDesc().setQuery("status eq \"QUEUED\""), builds());
+        Assert.assertTrue("Sort should be skipped when nothing matches.", items.isEmpty());
+
+        items = QueryEngine.run(sortedByDateDesc().setQuery("status eq \"QUEUED\"").setPage(1).setLimit(3), builds());
+        Assert.assertTrue(items.isEmpty());
+    }
+
+    @Test
+    public void afterTest() {
+        List<JsonObject> page = QueryEngine.run(sortedByDateDesc()
+                .setAfter("2017-12-08T10:00:00Z,b7").setLimit(3), builds());
+
+        Assert.assertEquals("Page should be filled.", 3, page.size());
+        Assert.assertEquals("Page should start right after the cursor.", "b6", page.get(0).getString("id"));
+
+        page = QueryEngine.run(new QuerySpec().setAfter("b7"), builds());
+        Assert.assertEquals("Without a sort the cursor should be an ID.", 2, page.size());
+    }
+
+    @Test
+    public void compileTest() {
+        Assert.assertSame("Compiled queries should be cached by query text.",
+                QueryEngine.compile("status eq \"DONE\""), QueryEngine.compile(" status eq \"DONE\" "));
+
+        List<JsonObject> items = QueryEngine.run(new QuerySpec()
+                .setQuery("utcCreatedDate ge i\"2017-12-09T10:00:00Z\" and not (status eq \"done\")"), builds());
+
+        Assert.assertEquals("Compiled query should filter items.", 1, items.size());
+        Assert.assertEquals("Compiled query should filter items.", "b9", items.get(0).getString("id"));
+    }
+
+    @Test
+    public void pathTest() {
+        List<JsonObject> builds = builds();
+
+        for (int b=0; b<builds.size(); b++) {
+            builds.get(b)
+                    .put("pipeline", new JsonObject().put("repo", new JsonObject().put("name", "r" + (b % 2))))
+                    .put("phases", new JsonArray()
+                            .add(new JsonObject().put("name", "build").put("status", "DONE"))
+                            .add(new JsonObject().put("name", "test").put("status", b < 3 ? "FAILED" : "DONE")));
+        }
+
+        List<JsonObject> items = QueryEngine.run(new QuerySpec().setQuery("pipeline.repo.name eq \"r1\""), builds);
+        Assert.assertEquals("Nested attribute paths should resolve.", 5, items.size());
+
+        items = QueryEngine.run(new QuerySpec().setQuery("pipeline.repo.missing pr"), builds);
+        Assert.assertEquals("Missing nested attributes should not be present.", 0, items.size());
+
+        items = QueryEngine.run(new QuerySpec()
+                .setQuery("phases[name eq \"test\" and status eq \"FAILED\"]"), builds);
+        Assert.assertEquals("Array filters should match any element.", 3, items.size());
+
+        items = QueryEngine.run(new QuerySpec()
+                .setQuery("phases[name eq \"build\" and status eq \"FAILED\"]"), builds);
+        Assert.assertEquals("Array filters should match within one element.", 0, items.size());
+    }
+
+    @Test
+    public void candidatesTest() {
+        Indexes indexes = indexes(builds());
+
+        Set<String> ids = QueryEngine.candidates(new QuerySpec().setQuery("status eq \"done\""), indexes);
+        Assert.assertEquals("Hash index should ignore case.", 5, ids.size());
+
+        ids = QueryEngine.candidates(new QuerySpec()
+                .setQuery("status eq \"DONE\" and utcCreatedDate lt i\"2017-12-05T10:00:00Z\""), indexes);
+        Assert.assertEquals("Conjunctions should intersect candidates.", 2, ids.size());
+
+        ids = QueryEngine.candidates(new QuerySpec()
+                .setQuery("pipelineID eq \"p1\" or pipelineID eq \"p2\""), indexes);
+        Assert.assertEquals("Disjunctions should union candidates.", 6, ids.size());
+
+        ids = QueryEngine.candidates(new QuerySpec()
+                .setQuery("status eq \"DONE\" or name co \"x\""), indexes);
+        Assert.assertNull("Disjunction with an unindexed attribute needs a full scan.", ids);
+
+        ids = QueryEngine.candidates(new QuerySpec().setQuery("not (status eq \"DONE\")"), indexes);
+        Assert.assertNull("Negations need a full scan.", ids);
+    }
+
+    @Test
+    public void indexUpdateTest() {
+        List<JsonObject> builds = builds();
+        Indexes indexes = indexes(builds);
+
+        JsonObject oldBuild = builds.get(0);
+        JsonObject newBuild = oldBuild.copy().put("status", "FAILED");
+        indexes.replace("b0", oldBuild, newBuild);
+
+        Set<String> ids = QueryEngine.candidates(new QuerySpec().setQuery("status eq \"FAILED\""), indexes);
+        Assert.assertTrue("Replaced item should be indexed under its new value.", ids.contains("b0"));
+
+        indexes.remove("b1", builds.get(1));
+
+        ids = QueryEngine.candidates(new QuerySpec().setQuery("status eq \"FAILED\""), indexes);
+        Assert.assertFalse("Removed item should not be indexed.", ids.contains("b1"));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+
+/**
+ * Persists the entities of a single collection. The in-memory view of a collection is owned by its
+ * {@link DbManager}; a store is only responsible for making mutations durable and reading them back on init.
+ */
+public interface EntityStore {
+
+    void load(Handler<AsyncResult<Map<String, JsonObject>>> handler);
+
+    void save(JsonObject entity, Handler<AsyncResult<Void>> handler);
+
+    void delete(String id, Handler<AsyncResult<Void>> handler);
+
+    default void close() {}
+}
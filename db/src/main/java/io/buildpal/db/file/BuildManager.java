@@ -18,10 +18,19 @@ package io.buildpal.db.file;
 
 import io.buildpal.core.domain.validation.Validator;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
+import static io.buildpal.core.domain.Build.PIPELINE_ID;
+import static io.buildpal.core.domain.Build.STATUS;
+import static io.buildpal.core.domain.Build.UTC_END_DATE;
+import static io.buildpal.core.domain.Entity.CREATED_BY;
+import static io.buildpal.core.domain.Entity.UTC_CREATED_DATE;
+import static io.buildpal.core.query.index.Indexes.HASH;
+import static io.buildpal.core.query.index.Indexes.SORTED;
+
 public class BuildManager extends FileDbManager {
     private static final Logger logger = LoggerFactory.getLogger(BuildManager.class);
 
@@ -33,4 +42,12 @@ public class BuildManager extends FileDbManager {
     public String getCollectionName() {
         return "builds";
     }
+
+    @Override
+    JsonObject getDefaultIndexes() {
+        // Fields the build list and the scavenger filter on.
+        return new JsonObject()
+                .put(HASH, new JsonArray().add(STATUS).add(PIPELINE_ID).add(CREATED_BY))
+                .put(SORTED, new JsonArray().add(UTC_CREATED_DATE).add(UTC_END_DATE));
+    }
 }
@@ -19,23 +19,28 @@ package io.buildpal.db.file;
 import io.buildpal.core.domain.validation.Validator;
 import io.buildpal.core.query.QueryEngine;
 import io.buildpal.core.query.QuerySpec;
+import io.buildpal.core.query.index.Indexes;
 import io.buildpal.core.util.FileUtils;
 import io.buildpal.core.util.ResultUtils;
 import io.buildpal.db.DbManager;
+import io.buildpal.db.EntityStore;
+import io.buildpal.db.log.LogEntityStore;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.shareddata.LocalMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
 import static io.buildpal.core.config.Constants.SYSTEM_FOLDER_PATH;
 import static io.buildpal.core.domain.Entity.ID;
 import static io.buildpal.core.util.FileUtils.SLASH;
@@ -48,8 +53,12 @@ import static io.buildpal.core.util.VertxUtils.future;
 public abstract class FileDbManager implements DbManager {
 
     private static final String DB_PATH = "db/";
-    private static final String ENTITY_PATH = "%s%s.json";
-    private static final String JSON_FILTER = ".+\\.json";
+    private static final String LOG_PATH = "log/";
+
+    private static final String DB = "db";
+    private static final String STORE = "store";
+    private static final String LOG_STORE = "log";
+    private static final String INDEXES = "indexes";
 
     protected final Vertx vertx;
     final FileSystem fs;
@@ -60,6 +69,9 @@ public abstract class FileDbManager implements DbManager {
     private final String collectionPath;
     final LocalMap<String, JsonObject> collectionMap;
 
+    final EntityStore store;
+    private final Indexes indexes;
+
     FileDbManager(Vertx vertx, Logger logger, JsonObject config, Validator validator) {
         this.vertx = vertx;
         this.fs = vertx.fileSystem();
@@ -69,6 +81,9 @@ public abstract class FileDbManager implements DbManager {
 
         collectionPath = setCollectionPath(config);
         collectionMap = vertx.sharedData().getLocalMap(getCollectionName());
+
+        store = newStore(config);
+        indexes = newIndexes(config);
     }
 
     String getCollectionPath() {
@@ -96,16 +111,18 @@ public abstract class FileDbManager implements DbManager {
                 }
 
                 // Read existing entities into the map.
-                FileUtils.readFiles(fs, collectionPath, JSON_FILTER, rfh -> {
+                store.load(lh -> {
 
-                    if (rfh.succeeded()) {
-                        rfh.result()
-                                .forEach((key, value) -> collectionMap.put(key, new JsonObject(value)));
+                    if (lh.succeeded()) {
+                        lh.result().forEach((id, entity) -> {
+                            collectionMap.put(id, entity);
+                            indexes.add(id, entity);
+                        });
 
                         future.complete();
 
                     } else {
-                        error(future, rfh);
+                        error(future, lh);
                     }
                 });
 
@@ -155,16 +172,16 @@ public abstract class FileDbManager implements DbManager {
 
         if (!failed(result)) {
 
-            final JsonObject entity = collectionMap.remove(id);
+            final JsonObject entity = removeFromCollection(id);
 
             // Check if entity exists in the map.
             if (entity != null) {
-                // Delete entity file.
-                fs.delete(getPath(id), dh -> {
+                // Delete entity from the store.
+                store.delete(id, dh -> {
 
                     if (dh.failed()) {
                         // Add the entity back to the map.
-                        collectionMap.put(id, entity);
+                        putInCollection(entity);
 
                         String message = "Failed to delete entity: " + entity;
                         addError(result, message);
@@ -192,10 +209,11 @@ public abstract class FileDbManager implements DbManager {
         Future<JsonObject> future = future(handler);
         JsonObject result = ResultUtils.newResult();
 
-        List<JsonObject> items = new ArrayList<>();
-        collectionMap.keySet().forEach(k -> items.add(collectionMap.get(k)));
-
         try {
+            // Narrow down the items using the indexes, before evaluating the query on each of them.
+            Set<String> candidates = QueryEngine.candidates(querySpec, indexes);
+            List<JsonObject> items = candidates == null ? list() : list(candidates);
+
             ResultUtils.addEntities(result, QueryEngine.run(querySpec, items));
 
         } catch (Exception ex) {
@@ -215,16 +233,46 @@ public abstract class FileDbManager implements DbManager {
         return items;
     }
 
+    /**
+     * Secondary indexes to maintain when none are configured for the collection.
+     */
+    JsonObject getDefaultIndexes() {
+        return EMPTY_JSON;
+    }
+
     String getID(JsonObject entity) {
         return entity.getString(ID);
     }
 
-    String getPath(JsonObject entity) {
-        return String.format(ENTITY_PATH, collectionPath, entity.getString(ID));
+    void putInCollection(JsonObject entity) {
+        String id = getID(entity);
+
+        JsonObject oldEntity = collectionMap.get(id);
+        collectionMap.put(id, entity);
+
+        indexes.replace(id, oldEntity, entity);
     }
 
-    private String getPath(String id) {
-        return String.format(ENTITY_PATH, collectionPath, id);
+    private JsonObject removeFromCollection(String id) {
+        JsonObject entity = collectionMap.remove(id);
+
+        if (entity != null) {
+            indexes.remove(id, entity);
+        }
+
+        return entity;
+    }
+
+    private List<JsonObject> list(Collection<String> ids) {
+        List<JsonObject> items = new ArrayList<>(ids.size());
+
+        for (String id : ids) {
+            JsonObject item = collectionMap.get(id);
+
+            if (item != null) items.add(item);
+        }
+
+        return items;
     }
 
     private String setCollectionPath(JsonObject config) {
@@ -234,6 +282,24 @@ public abstract class FileDbManager implements DbManager {
         return FileUtils.slashify(systemFolderPath) + DB_PATH + getCollectionName() + SLASH;
     }
 
+    private EntityStore newStore(JsonObject config) {
+        JsonObject dbConfig = config.getJsonObject(DB, EMPTY_JSON);
+        EntityStore fileStore = new JsonFileStore(vertx, collectionPath);
+
+        // The log store is opt-in ("db": {"store": "log"}); it imports the JSON entities on first use.
+        if (LOG_STORE.equals(dbConfig.getString(STORE))) {
+            return new LogEntityStore(vertx, getCollectionName(), collectionPath + LOG_PATH, dbConfig, fileStore);
+        }
+
+        return fileStore;
+    }
+
+    private Indexes newIndexes(JsonObject config) {
+        JsonObject indexesConfig = config.getJsonObject(DB, EMPTY_JSON).getJsonObject(INDEXES, EMPTY_JSON);
+
+        return new Indexes(indexesConfig.getJsonObject(getCollectionName(), getDefaultIndexes()));
+    }
+
     private void save(JsonObject entity, boolean isAdd, Handler<AsyncResult<JsonObject>> handler) {
         Future<JsonObject> future = future(handler);
         JsonObject result = validateEntity(entity);
@@ -260,15 +326,15 @@ public abstract class FileDbManager implements DbManager {
     }
 
     void save(JsonObject entity, boolean isAdd, JsonObject result, Future<JsonObject> future) {
-        saveToFile(entity, result, future);
+        saveToStore(entity, result, future);
     }
 
-    void saveToFile(JsonObject entity, JsonObject result, Future<JsonObject> future) {
-        fs.writeFile(getPath(entity), Buffer.buffer(entity.encode()), wh -> {
+    void saveToStore(JsonObject entity, JsonObject result, Future<JsonObject> future) {
+        store.save(entity, wh -> {
 
             if (wh.succeeded()) {
                 // Save to map.
-                collectionMap.put(getID(entity), entity);
+                putInCollection(entity);
                 future.complete(putEntity(result, entity));
 
             } else {
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db.file;
+
+import io.buildpal.core.util.FileUtils;
+import io.buildpal.db.EntityStore;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.buildpal.core.domain.Entity.ID;
+
+/**
+ * Stores every entity of a collection in its own JSON file.
+ */
+public class JsonFileStore implements EntityStore {
+
+    private static final String ENTITY_PATH = "%s%s.json";
+    private static final String JSON_GLOB = "*.json";
+
+    private final Vertx vertx;
+    private final FileSystem fs;
+    private final String collectionPath;
+
+    public JsonFileStore(Vertx vertx, String collectionPath) {
+        this.vertx = vertx;
+        this.fs = vertx.fileSystem();
+        this.collectionPath = collectionPath;
+    }
+
+    @Override
+    public void load(Handler<AsyncResult<Map<String, JsonObject>>> handler) {
+        // Files are read one at a time, so large collections don't exhaust file descriptors.
+        vertx.executeBlocking(f -> {
+            Map<String, JsonObject> entities = new HashMap<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(collectionPath), JSON_GLOB)) {
+                for (Path file : stream) {
+                    String id = FileUtils.baseName(file.toString());
+                    entities.put(id, new JsonObject(Buffer.buffer(Files.readAllBytes(file))));
+                }
+
+                f.complete(entities);
+
+            } catch (Exception ex) {
+                f.fail(ex);
+            }
+
+        }, false, handler);
+    }
+
+    @Override
+    public void save(JsonObject entity, Handler<AsyncResult<Void>> handler) {
+        fs.writeFile(getPath(entity.getString(ID)), Buffer.buffer(entity.encode()), handler);
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> handler) {
+        fs.delete(getPath(id), handler);
+    }
+
+    private String getPath(String id) {
+        return String.format(ENTITY_PATH, collectionPath, id);
+    }
+}
@@ -164,12 +164,12 @@ public class PipelineManager extends FileDbManager {
             entity.remove(JS);
         }
 
-        // Save to file.
-        fs.writeFile(getPath(entity), Buffer.buffer(entity.encode()), wh -> {
+        // Save to store.
+        store.save(entity, wh -> {
 
             if (wh.succeeded()) {
                 // Save to map.
-                collectionMap.put(getID(entity), entity);
+                putInCollection(entity);
 
                 if (js != null) {
                     saveJs(entity, js, result, future);
@@ -106,7 +106,7 @@ public class SecretManager extends FileDbManager {
         // Save to vault and then save the public properties to file.
         vaultService.save(entity, sh -> {
             if (sh.succeeded()) {
-                saveToFile(secret, result, future);
+                saveToStore(secret, result, future);
 
             } else {
                 String message = "Failed to save secret: " + secret;
@@ -55,7 +55,7 @@ public class UserManager extends FileDbManager {
             saveUserHash(isAdd, user, result, future);
 
         } else {
-            saveToFile(user.json(), result, future);
+            saveToStore(user.json(), result, future);
         }
     }
 
@@ -75,7 +75,7 @@ public class UserManager extends FileDbManager {
                 user.clearPassword();
 
                 if (sh.succeeded()) {
-                    saveToFile(user.json(), result, future);
+                    saveToStore(user.json(), result, future);
 
                 } else {
                     String message = "Unable to save hash for user: " + user.getName();
@@ -85,7 +85,7 @@ public class UserManager extends FileDbManager {
             });
 
         } else {
-            saveToFile(user.json(), result, future);
+            saveToStore(user.json(), result, future);
         }
     }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db.log;
+
+import io.buildpal.db.EntityStore;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.buildpal.core.domain.Entity.ID;
+import static io.buildpal.core.util.VertxUtils.future;
+import static io.buildpal.db.log.SegmentedLog.DELETE;
+import static io.buildpal.db.log.SegmentedLog.PUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stores the mutations of a collection in a {@link SegmentedLog}. All appends of a collection go through a
+ * single worker thread, so they hit the disk sequentially and in the order they were made. Closed segments
+ * are periodically folded into the snapshot, so startup only has to replay the tail of the log.
+ */
+public class LogEntityStore implements EntityStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogEntityStore.class);
+
+    private static final String SEGMENT_SIZE = "segmentSize";
+    private static final String SYNC_ON_WRITE = "syncOnWrite";
+    private static final String SNAPSHOT_AFTER_SEGMENTS = "snapshotAfterSegments";
+    private static final String SNAPSHOT_INTERVAL = "snapshotInterval";
+
+    // Written once the legacy entities are in the log. Until then, the import is started over.
+    private static final String IMPORTED_MARKER = "imported";
+
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final Vertx vertx;
+    private final String collectionName;
+    private final Path path;
+    private final EntityStore legacyStore;
+
+    private final SegmentedLog log;
+    private final WorkerExecutor appendExecutor;
+
+    private final int snapshotAfterSegments;
+    private final long snapshotInterval;
+
+    private long snapshotTimerID = -1;
+    private volatile boolean imported;
+
+    /**
+     * @param legacyStore store to import entities from until an import into the log completes.
+     */
+    public LogEntityStore(Vertx vertx, String collectionName, String path, JsonObject config,
+                          EntityStore legacyStore) {
+        this.vertx = vertx;
+        this.collectionName = collectionName;
+        this.path = Paths.get(path);
+        this.legacyStore = legacyStore;
+
+        log = new SegmentedLog(this.path,
+                config.getLong(SEGMENT_SIZE, 16L * 1024 * 1024),
+                config.getBoolean(SYNC_ON_WRITE, false));
+
+        appendExecutor = vertx.createSharedWorkerExecutor("DB-LOG-" + collectionName, 1);
+
+        snapshotAfterSegments = config.getInteger(SNAPSHOT_AFTER_SEGMENTS, 4);
+        snapshotInterval = config.getLong(SNAPSHOT_INTERVAL, 600000L);
+    }
+
+    @Override
+    public void load(Handler<AsyncResult<Map<String, JsonObject>>> handler) {
+        Future<Map<String, JsonObject>> future = future(handler);
+
+        blocking(() -> {
+            imported = Files.exists(path.resolve(IMPORTED_MARKER));
+
+            Map<String, byte[]> payloads = log.recover();
+
+            // Reading is sequential. Parsing is spread across all cores.
+            Map<String, JsonObject> entities = new ConcurrentHashMap<>(payloads.size());
+            payloads.entrySet().parallelStream()
+                    .forEach(e -> entities.put(e.getKey(), new JsonObject(Buffer.buffer(e.getValue()))));
+
+            return entities;
+
+        }, rh -> {
+
+            if (rh.failed()) {
+                future.fail(rh.cause());
+
+            } else if (!imported) {
+                // Either a new log, or the process died in the middle of an import. The legacy entities
+                // are the only data in the log until the import completes, so they can just be put again.
+                importLegacy(future);
+
+            } else {
+                startSnapshotTimer();
+                future.complete(rh.result());
+            }
+        });
+    }
+
+    @Override
+    public void save(JsonObject entity, Handler<AsyncResult<Void>> handler) {
+        // Encode right away. The entity may be changed by the caller once this method returns.
+        byte[] payload = entity.encode().getBytes(UTF_8);
+        String id = entity.getString(ID);
+
+        append(PUT, id, payload, handler);
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> handler) {
+        append(DELETE, id, NO_PAYLOAD, handler);
+    }
+
+    @Override
+    public void close() {
+        if (snapshotTimerID != -1) {
+            vertx.cancelTimer(snapshotTimerID);
+        }
+
+        blocking(() -> {
+            log.close();
+            return null;
+
+        }, ch -> {
+            if (ch.failed()) {
+                logger.error("Unable to close log of collection: " + collectionName, ch.cause());
+            }
+
+            appendExecutor.close();
+        });
+    }
+
+    private void append(byte op, String id, byte[] payload, Handler<AsyncResult<Void>> handler) {
+        Future<Void> future = future(handler);
+
+        blocking(() -> {
+            log.append(op, id, payload);
+            return null;
+
+        }, ah -> {
+
+            if (ah.succeeded()) {
+                snapshotIfNeeded(snapshotAfterSegments);
+                future.complete();
+
+            } else {
+                future.fail(ah.cause());
+            }
+        });
+    }
+
+    private void importLegacy(Future<Map<String, JsonObject>> future) {
+        legacyStore.load(lh -> {
+
+            if (lh.failed()) {
+                future.fail(lh.cause());
+                return;
+            }
+
+            Map<String, JsonObject> entities = lh.result();
+
+            Map<String, byte[]> payloads = new HashMap<>();
+            entities.forEach((id, entity) -> payloads.put(id, entity.encode().getBytes(UTF_8)));
+
+            blocking(() -> {
+                for (Map.Entry<String, byte[]> entry : payloads.entrySet()) {
+                    log.append(PUT, entry.getKey(), entry.getValue());
+                }
+
+                log.sync();
+                markImported();
+                return null;
+
+            }, ih -> {
+
+                if (ih.succeeded()) {
+                    logger.info(String.format("Imported %d entities into the log of collection: %s",
+                            entities.size(), collectionName));
+
+                    startSnapshotTimer();
+                    future.complete(entities);
+
+                } else {
+                    future.fail(ih.cause());
+                }
+            });
+        });
+    }
+
+    private void markImported() throws IOException {
+        try (FileChannel marker = FileChannel.open(path.resolve(IMPORTED_MARKER),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            marker.force(true);
+        }
+
+        imported = true;
+    }
+
+    private void startSnapshotTimer() {
+        snapshotTimerID = vertx.setPeriodic(snapshotInterval, t -> snapshotIfNeeded(1));
+    }
+
+    private void snapshotIfNeeded(int threshold) {
+        if (log.getClosedSegments() < threshold) return;
+
+        // Snapshots are built from closed segments only, so they can be written next to the appends.
+        vertx.<Boolean>executeBlocking(f -> {
+            try {
+                f.complete(log.snapshot());
+
+            } catch (Exception ex) {
+                f.fail(ex);
+            }
+
+        }, false, sh -> {
+            if (sh.failed()) {
+                logger.error("Unable to write snapshot of collection: " + collectionName, sh.cause());
+            }
+        });
+    }
+
+    private <T> void blocking(Callable<T> callable, Handler<AsyncResult<T>> handler) {
+        appendExecutor.<T>executeBlocking(f -> {
+            try {
+                f.complete(callable.call());
+
+            } catch (Exception ex) {
+                f.fail(ex);
+            }
+
+        }, true, handler);
+    }
+}
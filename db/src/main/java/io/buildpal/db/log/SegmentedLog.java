@@ -0,0 +1,459 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db.log;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A segmented, append-only log of entity mutations backed by a snapshot.
+ *
+ * Records are appended to the active segment. Once it grows past the configured size, the segment is closed
+ * and a new one is started. Closed segments are never written to again, so they can be folded into the
+ * snapshot, which holds the latest version of every live entity up to a given segment. On startup the snapshot
+ * is read sequentially and only the segments written after it (the tail) are replayed.
+ *
+ * Segment layout: [int magic][byte version][byte flags] followed by records.
+ * Snapshot layout: [int magic][byte version][long last segment][int count] followed by records.
+ * Record layout: [int length][int crc32][byte op][short id length][id][payload]
+ */
+public class SegmentedLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLog.class);
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int SEGMENT_MAGIC = 0x42504C47;
+    private static final int SNAPSHOT_MAGIC = 0x42505353;
+    private static final byte VERSION = 1;
+    private static final byte NONE = 0;
+
+    private static final int SEGMENT_HEADER_SIZE = 6;
+    private static final int SNAPSHOT_HEADER_SIZE = 17;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_BODY_SIZE = 3;
+
+    private static final String SEGMENT_FILE = "%016d.log";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SNAPSHOT_TMP_FILE = "snapshot.tmp";
+
+    private final Path path;
+    private final Path snapshotPath;
+    private final long maxSegmentSize;
+    private final boolean syncOnWrite;
+
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private FileChannel active;
+    private long activeSeq;
+    private volatile int closedSegments;
+
+    public SegmentedLog(Path path, long maxSegmentSize, boolean syncOnWrite) {
+        this.path = path;
+        this.snapshotPath = path.resolve(SNAPSHOT_FILE);
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Reads the snapshot, replays the segments written after it and returns the latest payload of each live
+     * entity. A torn record at the tail of a segment (the process died in the middle of an append) is truncated.
+     */
+    public synchronized Map<String, byte[]> recover() throws IOException {
+        Files.createDirectories(path);
+        Files.deleteIfExists(path.resolve(SNAPSHOT_TMP_FILE));
+
+        Map<String, byte[]> entities = new HashMap<>();
+        long snapshotSeq = readSnapshot(entities);
+
+        List<Long> segments = listSegments();
+        int tail = 0;
+
+        for (Long seq : segments) {
+
+            if (seq <= snapshotSeq) {
+                // Already folded into the snapshot. Left behind by a crash right after the snapshot was written.
+                Files.deleteIfExists(segmentPath(seq));
+
+            } else {
+                replay(seq, entities, true);
+                tail++;
+            }
+        }
+
+        closedSegments = tail;
+
+        long lastSeq = segments.isEmpty() ? snapshotSeq : Math.max(snapshotSeq, segments.get(segments.size() - 1));
+        activeSeq = lastSeq + 1;
+        active = openSegment(activeSeq);
+
+        return entities;
+    }
+
+    public synchronized void append(byte op, String id, byte[] payload) throws IOException {
+        ByteBuffer record = encode(op, id, payload);
+
+        if (active.position() > SEGMENT_HEADER_SIZE && active.position() + record.remaining() > maxSegmentSize) {
+            roll();
+        }
+
+        while (record.hasRemaining()) {
+            active.write(record);
+        }
+
+        if (syncOnWrite) {
+            active.force(false);
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        active.force(false);
+    }
+
+    public int getClosedSegments() {
+        return closedSegments;
+    }
+
+    /**
+     * Folds all closed segments into a new snapshot. The old snapshot is streamed through, so only the entities
+     * changed in the closed segments are held in memory. The active segment is not touched, so appends carry on
+     * while the snapshot is written.
+     *
+     * @return true if a new snapshot was written.
+     */
+    public boolean snapshot() throws IOException {
+        if (!snapshotting.compareAndSet(false, true)) return false;
+
+        try {
+            List<Long> segments = closedSegments();
+
+            if (segments.isEmpty()) return false;
+
+            // Latest version of each entity changed since the last snapshot. Deleted entities map to null.
+            Map<String, byte[]> changes = new LinkedHashMap<>();
+
+            for (Long seq : segments) {
+                replay(seq, changes, false);
+            }
+
+            long lastSeq = segments.get(segments.size() - 1);
+            Path tmpPath = path.resolve(SNAPSHOT_TMP_FILE);
+            int count = 0;
+
+            try (FileChannel channel = FileChannel.open(tmpPath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(lastSeq);
+                out.writeInt(0);
+
+                if (Files.exists(snapshotPath)) {
+                    try (DataInputStream in = openSnapshot()) {
+                        readSnapshotHeader(in);
+                        int previousCount = in.readInt();
+
+                        for (int r=0; r<previousCount; r++) {
+                            byte[] body = readRecord(in, Long.MAX_VALUE);
+
+                            if (body == null) {
+                                throw new IOException("Snapshot is corrupt: " + snapshotPath);
+                            }
+
+                            if (!changes.containsKey(readID(body))) {
+                                writeRecord(out, body);
+                                count++;
+                            }
+                        }
+                    }
+                }
+
+                for (Map.Entry<String, byte[]> entry : changes.entrySet()) {
+                    if (entry.getValue() != null) {
+                        ByteBuffer record = encode(PUT, entry.getKey(), entry.getValue());
+                        out.write(record.array(), 0, record.limit());
+                        count++;
+                    }
+                }
+
+                out.flush();
+
+                // Now that the number of entities is known, fill it in.
+                channel.write(ByteBuffer.allocate(4).putInt(0, count), SNAPSHOT_HEADER_SIZE - 4);
+                channel.force(true);
+            }
+
+            Files.move(tmpPath, snapshotPath, ATOMIC_MOVE, REPLACE_EXISTING);
+
+            // A crash from here on is harmless. Recovery skips segments covered by the snapshot.
+            for (Long seq : segments) {
+                Files.deleteIfExists(segmentPath(seq));
+            }
+
+            synchronized (this) {
+                closedSegments -= segments.size();
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Wrote snapshot of %d entities to %s after folding %d segments.",
+                        count, path, segments.size()));
+            }
+
+            return true;
+
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(true);
+            active.close();
+            active = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force(true);
+        active.close();
+
+        active = openSegment(++activeSeq);
+        closedSegments++;
+    }
+
+    private synchronized List<Long> closedSegments() throws IOException {
+        List<Long> segments = listSegments();
+        segments.removeIf(seq -> seq >= activeSeq);
+
+        return segments;
+    }
+
+    private FileChannel openSegment(long seq) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(seq), CREATE, TRUNCATE_EXISTING, WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(SEGMENT_MAGIC).put(VERSION).put(NONE);
+        header.flip();
+
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        return channel;
+    }
+
+    private DataInputStream openSnapshot() throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)));
+    }
+
+    /**
+     * @return the last segment folded into the snapshot.
+     */
+    private long readSnapshotHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Snapshot has an invalid header: " + snapshotPath);
+        }
+
+        return in.readLong();
+    }
+
+    private long readSnapshot(Map<String, byte[]> entities) throws IOException {
+        if (Files.notExists(snapshotPath)) return 0;
+
+        try (DataInputStream in = openSnapshot()) {
+            long lastSeq = readSnapshotHeader(in);
+            int count = in.readInt();
+
+            for (int r=0; r<count; r++) {
+                byte[] body = readRecord(in, Long.MAX_VALUE);
+
+                if (body == null) {
+                    throw new IOException("Snapshot is corrupt: " + snapshotPath);
+                }
+
+                apply(body, entities, false);
+            }
+
+            return lastSeq;
+        }
+    }
+
+    private void replay(long seq, Map<String, byte[]> entities, boolean recovering) throws IOException {
+        Path segmentPath = segmentPath(seq);
+
+        try (FileChannel channel = recovering ?
+                FileChannel.open(segmentPath, READ, WRITE) : FileChannel.open(segmentPath, READ)) {
+
+            long size = channel.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            if (size < SEGMENT_HEADER_SIZE || in.readInt() != SEGMENT_MAGIC) {
+                logger.warn("Skipping segment with an invalid header: " + segmentPath);
+                return;
+            }
+
+            in.readByte();
+            in.readByte();
+
+            long position = SEGMENT_HEADER_SIZE;
+            byte[] body;
+
+            while ((body = readRecord(in, size - position)) != null) {
+                apply(body, entities, !recovering);
+                position += RECORD_HEADER_SIZE + body.length;
+            }
+
+            if (position < size) {
+                logger.warn(String.format("Discarding %d bytes of torn records at the tail of: %s",
+                        size - position, segmentPath));
+
+                if (recovering) {
+                    channel.truncate(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the body of the next record or null if there is no complete and intact record left.
+     */
+    private byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < RECORD_HEADER_SIZE) return null;
+
+        int length = in.readInt();
+        int checksum = in.readInt();
+
+        if (length < MIN_BODY_SIZE || length > remaining - RECORD_HEADER_SIZE) return null;
+
+        byte[] body = new byte[length];
+        in.readFully(body);
+
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+
+        return (int) crc.getValue() == checksum ? body : null;
+    }
+
+    private void writeRecord(DataOutputStream out, byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        out.writeInt(body.length);
+        out.writeInt((int) crc.getValue());
+        out.write(body);
+    }
+
+    private void apply(byte[] body, Map<String, byte[]> entities, boolean keepDeletes) {
+        String id = readID(body);
+
+        if (body[0] == PUT) {
+            entities.put(id, Arrays.copyOfRange(body, MIN_BODY_SIZE + idLength(body), body.length));
+
+        } else if (keepDeletes) {
+            entities.put(id, null);
+
+        } else {
+            entities.remove(id);
+        }
+    }
+
+    private String readID(byte[] body) {
+        return new String(body, MIN_BODY_SIZE, idLength(body), UTF_8);
+    }
+
+    private int idLength(byte[] body) {
+        return ((body[1] & 0xff) << 8) | (body[2] & 0xff);
+    }
+
+    private ByteBuffer encode(byte op, String id, byte[] payload) {
+        byte[] idBytes = id.getBytes(UTF_8);
+
+        if (idBytes.length > 0xffff) {
+            throw new IllegalArgumentException("Entity ID is too long: " + id);
+        }
+
+        int length = MIN_BODY_SIZE + idBytes.length + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+
+        record.position(RECORD_HEADER_SIZE);
+        record.put(op).putShort((short) idBytes.length).put(idBytes).put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+
+        record.putInt(0, length).putInt(4, (int) crc.getValue());
+        record.flip();
+
+        return record;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                String name = segment.getFileName().toString();
+
+                try {
+                    segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+
+                } catch (NumberFormatException ex) {
+                    logger.warn("Ignoring unknown file in log folder: " + segment);
+                }
+            }
+        }
+
+        Collections.sort(segments);
+
+        return segments;
+    }
+
+    private Path segmentPath(long seq) {
+        return path.resolve(String.format(SEGMENT_FILE, seq));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db.log;
+
+import io.buildpal.db.EntityStore;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.buildpal.db.log.SegmentedLog.PUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class LogEntityStoreTest {
+
+    @Test
+    public void interruptedImportTest() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        Path path = Files.createTempDirectory("log");
+
+        try {
+            // Simulate a crash in the middle of the import: one entity made it to the log, no marker.
+            SegmentedLog log = new SegmentedLog(path, 1024, false);
+            log.recover();
+            log.append(PUT, "a", "{\"id\":\"a\",\"v\":1}".getBytes(UTF_8));
+            log.close();
+
+            Map<String, JsonObject> legacy = new HashMap<>();
+            legacy.put("a", new JsonObject().put("id", "a").put("v", 1));
+            legacy.put("b", new JsonObject().put("id", "b").put("v", 2));
+
+            Map<String, JsonObject> entities = load(vertx, "first", path, legacy);
+
+            Assert.assertEquals("Import should be started over.", 2, entities.size());
+            Assert.assertTrue("Import should be marked as complete.", Files.exists(path.resolve("imported")));
+
+            Map<String, JsonObject> changedLegacy = new HashMap<>();
+            changedLegacy.put("c", new JsonObject().put("id", "c"));
+
+            entities = load(vertx, "second", path, changedLegacy);
+
+            Assert.assertEquals("Completed import should not be repeated.", 2, entities.size());
+            Assert.assertFalse("Legacy store should not be read again.", entities.containsKey("c"));
+
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private Map<String, JsonObject> load(Vertx vertx, String collectionName, Path path,
+                                         Map<String, JsonObject> legacy) throws Exception {
+
+        CompletableFuture<Map<String, JsonObject>> loaded = new CompletableFuture<>();
+
+        LogEntityStore store = new LogEntityStore(vertx, collectionName, path.toString(), new JsonObject(),
+                new LegacyStore(legacy));
+
+        store.load(lh -> {
+            if (lh.succeeded()) {
+                loaded.complete(lh.result());
+
+            } else {
+                loaded.completeExceptionally(lh.cause());
+            }
+        });
+
+        return loaded.get(10, TimeUnit.SECONDS);
+    }
+
+    private static class LegacyStore implements EntityStore {
+        private final Map<String, JsonObject> entities;
+
+        private LegacyStore(Map<String, JsonObject> entities) {
+            this.entities = entities;
+        }
+
+        @Override
+        public void load(Handler<AsyncResult<Map<String, JsonObject>>> handler) {
+            handler.handle(Future.succeededFuture(new HashMap<>(entities)));
+        }
+
+        @Override
+        public void save(JsonObject entity, Handler<AsyncResult<Void>> handler) {
+            handler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void delete(String id, Handler<AsyncResult<Void>> handler) {
+            handler.handle(Future.succeededFuture());
+        }
+    }
+}
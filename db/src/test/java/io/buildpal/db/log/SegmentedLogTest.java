@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.db.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static io.buildpal.db.log.SegmentedLog.DELETE;
+import static io.buildpal.db.log.SegmentedLog.PUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class SegmentedLogTest {
+
+    @Test
+    public void recoverTest() throws Exception {
+        Path path = Files.createTempDirectory("log");
+
+        SegmentedLog log = new SegmentedLog(path, 256, false);
+        log.recover();
+
+        for (int i=0; i<20; i++) {
+            log.append(PUT, "id" + (i % 4), ("{\"v\":" + i + "}").getBytes(UTF_8));
+        }
+
+        log.append(DELETE, "id1", new byte[0]);
+        log.close();
+
+        Map<String, byte[]> entities = new SegmentedLog(path, 256, false).recover();
+
+        Assert.assertEquals("Deleted entity should not be recovered.", 3, entities.size());
+        Assert.assertEquals("Latest version should be recovered.",
+                "{\"v\":19}", new String(entities.get("id3"), UTF_8));
+    }
+
+    @Test
+    public void tornTailTest() throws Exception {
+        Path path = Files.createTempDirectory("log");
+
+        SegmentedLog log = new SegmentedLog(path, 1024, false);
+        log.recover();
+        log.append(PUT, "id", "{}".getBytes(UTF_8));
+        log.close();
+
+        // Simulate a crash in the middle of an append.
+        Files.write(path.resolve(String.format("%016d.log", 1)), new byte[] { 0, 0, 0, 42, 7 },
+                StandardOpenOption.APPEND);
+
+        Map<String, byte[]> entities = new SegmentedLog(path, 1024, false).recover();
+
+        Assert.assertEquals("Records before the torn tail should be recovered.", 1, entities.size());
+    }
+
+    @Test
+    public void snapshotTest() throws Exception {
+        Path path = Files.createTempDirectory("log");
+
+        SegmentedLog log = new SegmentedLog(path, 128, false);
+        log.recover();
+
+        for (int i=0; i<50; i++) {
+            log.append(PUT, "id" + (i % 5), ("{\"v\":" + i + "}").getBytes(UTF_8));
+        }
+
+        Assert.assertTrue("Log should have rolled over to new segments.", log.getClosedSegments() > 1);
+        Assert.assertTrue("Closed segments should be folded into a snapshot.", log.snapshot());
+        Assert.assertEquals("Snapshot should leave no closed segments.", 0, log.getClosedSegments());
+
+        // Changes after the snapshot end up in the tail of the log.
+        log.append(DELETE, "id0", new byte[0]);
+        log.append(PUT, "id5", "{}".getBytes(UTF_8));
+        log.close();
+
+        Map<String, byte[]> entities = new SegmentedLog(path, 128, false).recover();
+
+        Assert.assertEquals("Snapshot and tail should both be recovered.", 5, entities.size());
+        Assert.assertFalse("Entity deleted in the tail should not be recovered.", entities.containsKey("id0"));
+        Assert.assertEquals("Latest version should survive the snapshot.",
+                "{\"v\":49}", new String(entities.get("id4"), UTF_8));
+    }
+}
@@ -29,6 +29,7 @@ import io.buildpal.node.auth.LoginAuthHandler;
 import io.buildpal.node.auth.LogoutAuthHandler;
 import io.buildpal.node.data.BuildScavenger;
 import io.buildpal.node.engine.Engine;
+import io.buildpal.node.engine.Scheduler;
 import io.buildpal.node.router.BaseRouter;
 import io.buildpal.node.router.BuildRouter;
 import io.buildpal.node.router.CrudRouter;
@@ -214,7 +215,7 @@ public class Node extends AbstractVerticle {
                         .getRouter());
 
         mainRouter.mountSubRouter(API_PATH,
-                new BuildRouter(vertx, jwtAuth, null, dbManagers.getBuildManager())
+                new BuildRouter(vertx, config(), jwtAuth, null, dbManagers.getBuildManager())
                         .getRouter());
 
         mainRouter.mountSubRouter(API_PATH,
@@ -285,10 +286,10 @@ public class Node extends AbstractVerticle {
         if (isServer(config())) {
 
             if (isEngine(config())) {
-                verticles = List.of(new JCEVaultVerticle(), new BuildScavenger(), new Engine());
+                verticles = List.of(new JCEVaultVerticle(), new BuildScavenger(), new Scheduler(), new Engine());
 
             } else {
-                verticles = List.of(new JCEVaultVerticle(), new BuildScavenger());
+                verticles = List.of(new JCEVaultVerticle(), new BuildScavenger(), new Scheduler());
             }
 
         } else {
@@ -17,34 +17,58 @@
 package io.buildpal.node.engine;
 
 import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.Status;
+import io.buildpal.core.domain.Workspace;
 import io.buildpal.core.pipeline.Plugin;
 import io.buildpal.core.pipeline.event.CommandKey;
 import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
 import io.buildpal.core.util.VertxUtils;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.LocalMap;
 import org.apache.commons.lang3.StringUtils;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
 
+import static io.buildpal.core.config.Constants.BUILD_UPDATE_ADDRESS;
 import static io.buildpal.core.config.Constants.DELETE_CONTAINERS_ADDRESS;
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
 import static io.buildpal.core.config.Constants.KILL_CONTAINERS_ADDRESS;
 import static io.buildpal.core.config.Constants.NODE;
-import static io.buildpal.core.config.Constants.SAVE_USER_AFFINITY_ADDRESS;
+import static io.buildpal.core.config.Constants.PHASE_CACHE_EVICT_ADDRESS;
+import static io.buildpal.core.domain.Build.BUILD;
 import static io.buildpal.core.domain.Entity.ID;
 import static io.buildpal.core.util.ResultUtils.newEntity;
+import static io.buildpal.node.engine.EngineLoad.BUILDS;
+import static io.buildpal.node.engine.EngineLoad.FREE_MEMORY;
+import static io.buildpal.node.engine.EngineLoad.LOAD;
+import static io.buildpal.node.engine.EngineLoad.RUNNING;
+import static io.buildpal.node.engine.EngineLoad.SLOTS;
+import static io.buildpal.node.engine.EngineLoad.WAITING;
+import static io.buildpal.node.engine.EngineLoad.WORKSPACES;
+import static io.buildpal.node.engine.EngineLoad.WORKSPACE_HITS;
 import static io.buildpal.node.engine.Flow.END;
+import static io.buildpal.node.engine.Scheduler.ENDED;
+import static io.buildpal.node.engine.Scheduler.HEARTBEAT;
 
 public class Engine extends AbstractVerticle {
     private final static Logger logger = LoggerFactory.getLogger(Engine.class);
@@ -53,15 +77,24 @@ public class Engine extends AbstractVerticle {
     public static final String START = "pipeline.instance.start";
     public static final String ABORT = "pipeline.instance.abort";
     public static final String DELETE = "pipeline.instance.delete";
+    public static final String STATS_ON_NODE = "%s:pipeline.engine.stats";
 
     private List<Plugin> setupPlugins;
     private List<Plugin> tearDownPlugins;
     private List<Plugin> phasePlugins;
 
     private String publicFQDN;
+    private int maxConcurrentFlows;
 
     private LocalMap<String, Flow> currentFlows;
 
+    // Start requests beyond maxConcurrentFlows wait here, in arrival order, until a running flow ends.
+    private final Deque<JsonObject> waitingFlows = new ArrayDeque<>();
+
+    // Workspaces this node built recently, most recent last. They are advertised for workspace locality.
+    private Map<String, Boolean> recentWorkspaces;
+    private long workspaceHits;
+
     @Override
     public void start(Future<Void> startFuture) {
         try {
@@ -77,10 +110,37 @@ public class Engine extends AbstractVerticle {
 
             currentFlows = vertx.sharedData().getLocalMap("currentFlows");
 
+            JsonObject engineConfig = config().getJsonObject(NODE, EMPTY_JSON).getJsonObject("engine", EMPTY_JSON);
+            maxConcurrentFlows = engineConfig.getInteger("maxConcurrentFlows", 4);
+
+            int maxWorkspaces = engineConfig.getInteger("advertisedWorkspaces", 256);
+
+            recentWorkspaces = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxWorkspaces;
+                }
+            };
+
+            EventCodec.register(vertx);
+
             registerPipelineHandlers();
             registerFlowHandlers();
 
-            deployPlugins(loadPlugins(), startFuture);
+            long heartbeatInterval = engineConfig.getLong("heartbeatInterval", 5000L);
+
+            deployPlugins(loadPlugins(), dh -> {
+                if (dh.succeeded()) {
+                    // Advertise the free slots to the scheduler only once builds can run here.
+                    vertx.setPeriodic(heartbeatInterval, ph -> publishHeartbeat());
+                    publishHeartbeat();
+
+                    startFuture.complete();
+
+                } else {
+                    startFuture.fail(dh.cause());
+                }
+            });
 
         } catch (Exception ex) {
             logger.error("Unable to start pipeline engine", ex);
@@ -92,14 +152,20 @@ public class Engine extends AbstractVerticle {
         vertx.eventBus().consumer(START, startHandler());
         vertx.eventBus().consumer(String.format(START_ON_NODE, publicFQDN), startHandler());
 
+        vertx.eventBus().<JsonObject>consumer(String.format(STATS_ON_NODE, publicFQDN), mh -> mh.reply(stats()));
+
         vertx.eventBus().<JsonObject>consumer(DELETE, mh -> {
             // Received a request to delete the build.
             final Build build = new Build(mh.body());
+            removeWaitingFlow(build.getID());
 
             List<String> containerIDs = build.getAllContainerIDs();
 
             // Delete the containers, if any on this instance, asynchronously --best effort (relying on vertx).
             vertx.eventBus().send(DELETE_CONTAINERS_ADDRESS, newEntity(containerIDs));
+
+            // Later builds can no longer reuse the results (and the logs) of the deleted build.
+            vertx.eventBus().send(PHASE_CACHE_EVICT_ADDRESS, newEntity(build.getID()));
         });
 
         vertx.eventBus().<JsonObject>consumer(ABORT, mh -> {
@@ -108,6 +174,8 @@ public class Engine extends AbstractVerticle {
             Flow flow = currentFlows.get(build.getID());
 
             if (flow == null) {
+                // The router already marked the build as canceled. Just give up its place in the queue.
+                removeWaitingFlow(build.getID());
                 return;
             }
 
@@ -134,25 +202,109 @@ public class Engine extends AbstractVerticle {
             if (logger.isDebugEnabled()) {
                 logger.debug("Flow processed and removed from the queue: " + build.getID());
             }
+
+            vertx.eventBus().publish(ENDED, new JsonObject().put(ID, build.getID()));
+
+            admitWaitingFlows();
+            publishHeartbeat();
         });
     }
 
     private Handler<Message<JsonObject>> startHandler() {
         return mh -> {
             // Received a request to start the build.
-            // Start the pipeline flow.
-            Flow flow = new Flow(mh.body(), setupPlugins, tearDownPlugins, phasePlugins, vertx.eventBus());
-            currentFlows.put(flow.getBuild().getID(), flow);
+            String buildID = mh.body().getJsonObject(BUILD).getString(ID);
+
+            if (currentFlows.get(buildID) != null || isWaiting(buildID)) {
+                // Sent again, e.g. by a scheduler that restarted while the build was waiting here.
+                logger.info("Build already running or waiting on this engine: " + buildID);
+                return;
+            }
 
-            flow.start();
+            if (currentFlows.size() >= maxConcurrentFlows) {
+                parkFlow(mh.body());
 
-            vertx.eventBus().send(SAVE_USER_AFFINITY_ADDRESS,
-                    new JsonObject()
-                            .put(ID, flow.getBuild().getCreatedBy())
-                            .put(NODE, publicFQDN));
+            } else {
+                startFlow(mh.body());
+            }
         };
     }
 
+    private void parkFlow(JsonObject message) {
+        waitingFlows.add(message);
+
+        Build build = new Build(message.getJsonObject(BUILD).copy()).setStatus(Status.WAITING);
+        vertx.eventBus().send(BUILD_UPDATE_ADDRESS, build.json());
+
+        logger.info("Engine at capacity. Build " + build.getID() + " is waiting. Queue depth: " +
+                waitingFlows.size());
+    }
+
+    private void admitWaitingFlows() {
+        while (currentFlows.size() < maxConcurrentFlows && !waitingFlows.isEmpty()) {
+            startFlow(waitingFlows.poll());
+        }
+    }
+
+    private boolean isWaiting(String buildID) {
+        return waitingFlows.stream().anyMatch(m -> buildID.equals(m.getJsonObject(BUILD).getString(ID)));
+    }
+
+    private void removeWaitingFlow(String buildID) {
+        boolean removed = waitingFlows.removeIf(m -> buildID.equals(m.getJsonObject(BUILD).getString(ID)));
+
+        if (removed) {
+            vertx.eventBus().publish(ENDED, new JsonObject().put(ID, buildID));
+            publishHeartbeat();
+        }
+    }
+
+    private void startFlow(JsonObject message) {
+        // Start the pipeline flow.
+        Flow flow = new Flow(message, setupPlugins, tearDownPlugins, phasePlugins, vertx.eventBus());
+        currentFlows.put(flow.getBuild().getID(), flow);
+
+        flow.start();
+
+        String workspaceID = Workspace.workspaceID(flow.getBuild().getCreatedBy(),
+                flow.getBuild().getPipelineID());
+
+        if (recentWorkspaces.put(workspaceID, Boolean.TRUE) != null) {
+            workspaceHits++;
+        }
+    }
+
+    private void publishHeartbeat() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        // Load average is not available on every platform (-1). Report it per processor.
+        double load = os.getSystemLoadAverage();
+        long freeMemory = -1;
+
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            freeMemory = ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+        }
+
+        // The builds the engine holds, so the scheduler can clear its reservations for them.
+        JsonArray builds = new JsonArray(new ArrayList<>(currentFlows.keySet()));
+        waitingFlows.forEach(m -> builds.add(m.getJsonObject(BUILD).getString(ID)));
+
+        vertx.eventBus().publish(HEARTBEAT, stats()
+                .put(BUILDS, builds)
+                .put(LOAD, load < 0 ? -1 : load / os.getAvailableProcessors())
+                .put(FREE_MEMORY, freeMemory)
+                .put(WORKSPACES, new JsonArray(new ArrayList<>(recentWorkspaces.keySet())))
+                .put(WORKSPACE_HITS, workspaceHits));
+    }
+
+    private JsonObject stats() {
+        return new JsonObject()
+                .put(NODE, publicFQDN)
+                .put(SLOTS, maxConcurrentFlows)
+                .put(RUNNING, currentFlows.size())
+                .put(WAITING, waitingFlows.size());
+    }
+
     private Handler<Message<JsonObject>> flowHandler() {
         return mh -> {
             try {
@@ -212,14 +364,14 @@ public class Engine extends AbstractVerticle {
         return plugins;
     }
 
-    private void deployPlugins(List<Plugin> plugins, Future<Void> startFuture) {
+    private void deployPlugins(List<Plugin> plugins, Handler<AsyncResult<Void>> handler) {
 
         VertxUtils.deployVerticles(vertx, new ArrayList<>(plugins), config(), h -> {
             if (h.succeeded()) {
-                startFuture.complete();
+                handler.handle(Future.succeededFuture());
 
             } else {
-                startFuture.fail(h.cause());
+                handler.handle(Future.failedFuture(h.cause()));
             }
         });
     }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.engine;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What an engine advertised in its last heartbeat: its slots, how loaded the node is and the workspaces it holds.
+ *
+ * Builds dispatched to the engine since are held as pending reservations on top of the advertised load. A reservation
+ * is cleared once a heartbeat lists its build, when the build ends or after the reservation timeout.
+ */
+class EngineLoad {
+    static final String SLOTS = "slots";
+    static final String RUNNING = "running";
+    static final String WAITING = "waiting";
+    static final String LOAD = "load";
+    static final String FREE_MEMORY = "freeMemory";
+    static final String WORKSPACES = "workspaces";
+    static final String WORKSPACE_HITS = "workspaceHits";
+    static final String BUILDS = "builds";
+
+    private final String node;
+    private final long reservationTimeout;
+
+    // Reservation times by build ID.
+    private final Map<String, Long> pending = new HashMap<>();
+
+    private int slots;
+    private int running;
+    private double load = -1;
+    private long freeMemory = -1;
+    private Set<String> workspaces = new HashSet<>();
+    private long lastSeen;
+
+    EngineLoad(String node, long reservationTimeout) {
+        this.node = node;
+        this.reservationTimeout = reservationTimeout;
+    }
+
+    @SuppressWarnings("unchecked")
+    EngineLoad update(JsonObject heartbeat) {
+        slots = heartbeat.getInteger(SLOTS, 0);
+        // Flows waiting in the engine's admission queue hold a slot as much as running ones.
+        running = heartbeat.getInteger(RUNNING, 0) + heartbeat.getInteger(WAITING, 0);
+        load = heartbeat.getDouble(LOAD, -1d);
+        freeMemory = heartbeat.getLong(FREE_MEMORY, -1L);
+        workspaces = new HashSet<>(heartbeat.getJsonArray(WORKSPACES, new JsonArray()).getList());
+        lastSeen = System.currentTimeMillis();
+
+        // Builds the engine accepted are now part of its advertised load.
+        pending.keySet().removeAll(heartbeat.getJsonArray(BUILDS, new JsonArray()).getList());
+        pending.values().removeIf(reservedAt -> lastSeen - reservedAt >= reservationTimeout);
+
+        return this;
+    }
+
+    String getNode() {
+        return node;
+    }
+
+    long getLastSeen() {
+        return lastSeen;
+    }
+
+    void reserveSlot(String buildID) {
+        pending.put(buildID, System.currentTimeMillis());
+    }
+
+    void releaseSlot(String buildID) {
+        pending.remove(buildID);
+    }
+
+    private int used() {
+        return running + pending.size();
+    }
+
+    boolean hasWorkspace(String workspaceID) {
+        return workspaces.contains(workspaceID);
+    }
+
+    /**
+     * @return true if the engine has a free slot and, when it reports it, at least the given free memory.
+     */
+    boolean canRun(long minFreeMemory) {
+        return slots - used() > 0 && (freeMemory < 0 || freeMemory >= minFreeMemory);
+    }
+
+    /**
+     * Higher is better. Free slots count for up to 1 and the CPU load for between -1 (twice oversubscribed) and 1
+     * (idle). Holding the build's workspace adds the locality weight, as a warm checkout skips the clone.
+     */
+    double score(String workspaceID, double localityWeight) {
+        double score = slots > 0 ? (double) (slots - used()) / slots : 0;
+
+        // Load is per processor. Unknown load (-1) is treated as neutral.
+        if (load >= 0) {
+            score += 1 - Math.min(load, 2);
+        }
+
+        if (hasWorkspace(workspaceID)) {
+            score += localityWeight;
+        }
+
+        return score;
+    }
+}
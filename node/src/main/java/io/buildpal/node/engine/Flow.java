@@ -17,13 +17,17 @@
 package io.buildpal.node.engine;
 
 import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.BuildPatch;
 import io.buildpal.core.domain.Phase;
 import io.buildpal.core.domain.Status;
 import io.buildpal.core.pipeline.Plugin;
 import io.buildpal.core.pipeline.event.Command;
 import io.buildpal.core.pipeline.event.CommandKey;
 import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -33,13 +37,16 @@ import io.vertx.core.shareddata.Shareable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.buildpal.core.config.Constants.BUILD_UPDATE_ADDRESS;
+import static io.buildpal.core.config.Constants.PHASE_CACHE_STORE_ADDRESS;
 import static io.buildpal.core.domain.Build.BUILD;
 
 /**
@@ -56,6 +63,14 @@ class Flow implements Shareable {
 
     private static final String SCRIPT = "script";
 
+    // Send the full build after these many patches.
+    private static final int CHECKPOINT_INTERVAL = 20;
+    private static final DeliveryOptions PATCH_OPTIONS = new DeliveryOptions().addHeader(BuildPatch.PATCH, "true");
+
+    // Copying large outputs can take a while. Past this, the dependent phases start anyway.
+    private static final DeliveryOptions CACHE_STORE_OPTIONS = new DeliveryOptions(EventCodec.OPTIONS)
+            .setSendTimeout(600000L);
+
     private enum State {
         SETUP,
         RUN,
@@ -75,9 +90,16 @@ class Flow implements Shareable {
 
     private final AtomicInteger pluginCounter;
 
-    private final Queue<List<Phase>> stagesQueue;
+    private PhaseGraph phaseGraph;
     private final Map<Integer, AtomicInteger> phasesCounter;
 
+    private final Set<String> changedPhaseIDs;
+    private int patchCount;
+    private boolean checkpointNeeded;
+
+    // Read-only copy of the build shared by the commands until the build changes.
+    private JsonObject buildSnapshot;
+
     private boolean aborted;
 
     Flow(JsonObject message,
@@ -98,9 +120,12 @@ class Flow implements Shareable {
         this.statesQueue = new LinkedList<>(List.of(State.SETUP, State.RUN, State.TEAR_DOWN));
         this.pluginCounter = new AtomicInteger(-1);
 
-        this.stagesQueue = new LinkedList<>();
         this.phasesCounter = new HashMap<>();
 
+        this.changedPhaseIDs = new LinkedHashSet<>();
+        this.patchCount = 0;
+        this.checkpointNeeded = false;
+
         this.aborted = false;
     }
 
@@ -110,6 +135,7 @@ class Flow implements Shareable {
 
     public void start() {
         build.setStatus(Status.IN_FLIGHT);
+        buildSnapshot = null;
         process(null);
 
         if (logger.isDebugEnabled()) {
@@ -125,6 +151,7 @@ class Flow implements Shareable {
 
         aborted = true;
         List<String> containerIDs = build.markForAbort();
+        buildSnapshot = null;
 
         if (logger.isDebugEnabled()) {
             logger.debug("Pipeline instance aborted: " + build.getID());
@@ -173,7 +200,7 @@ class Flow implements Shareable {
 
             } else {
                 int order = setupPlugins.get(counter).order();
-                eb.send(CommandKey.SETUP.getAddress(order), setupCommand());
+                eb.send(CommandKey.SETUP.getAddress(order), setupCommand(), EventCodec.OPTIONS);
             }
 
         } else {
@@ -183,69 +210,95 @@ class Flow implements Shareable {
     }
 
     private void run(Event event) {
-        List<Phase> stage = stagesQueue.peek();
-
-        if (stage == null) {
+        if (phaseGraph == null || phaseGraph.isComplete()) {
             nextState();
             return;
         }
 
         if (event == null) {
-            // Start the stage.
-            phasesCounter.clear();
-
-            for (int p=0; p<stage.size(); p++) {
-                Phase phase = stage.get(p);
-                phase.setIndex(p);
-                phase.setStatus(Status.IN_FLIGHT);
-
-                build.updatePhase(phase);
-
-                phasesCounter.put(p, new AtomicInteger(0));
-
-                int order = phasePlugins.get(phasesCounter.get(p).get()).order();
-
-                // Start processing phase.
-                // Phases in the same stage are processed in parallel.
-                phase.addRunResult();
-                eb.send(CommandKey.RUN_PHASE.getAddress(order), runPhaseCommand(phase));
-            }
+            // Start the phases that don't depend on other phases.
+            startPhases(phaseGraph.roots());
 
             // Send updates about the parallel phases to DB.
-            eb.send(BUILD_UPDATE_ADDRESS, build.json());
+            sendPatch();
 
         } else {
 
             // Plugin completed processing the phase.
             Phase eventPhase = event.getPhase();
             int phaseIndex = eventPhase.getIndex();
-            Phase stagePhase = stage.get(phaseIndex);
+            Phase stagePhase = phaseGraph.get(phaseIndex);
 
             if (updateBuildFromPhaseEvent(event, eventPhase, stagePhase)) {
 
                 int counter = phasesCounter.get(phaseIndex).incrementAndGet();
 
-                if (counter == phasePlugins.size()) {
-                    // All plugins applied on the current phase. Update status.
+                if (counter == phasePlugins.size() || stagePhase.isCached()) {
+                    // All plugins applied on the current phase, or the result of an earlier build was reused.
                     stagePhase.setStatus(stagePhase.getFinalResult());
-                    build.updatePhase(stagePhase);
+                    updatePhase(stagePhase);
 
-                    verifyStageCompletion(stage);
+                    // The phases that depend on this one may write into its outputs, so they wait for the copy.
+                    cachePhaseResult(stagePhase, v -> completePhase(stagePhase));
 
                 } else {
                     int order = phasePlugins.get(counter).order();
 
                     // Continue processing the phase by passing it to the next plugin.
                     stagePhase.addRunResult();
-                    eb.send(CommandKey.RUN_PHASE.getAddress(order), runPhaseCommand(stagePhase));
+                    eb.send(CommandKey.RUN_PHASE.getAddress(order), runPhaseCommand(stagePhase), EventCodec.OPTIONS);
                 }
 
             } else {
-                verifyStageCompletion(stage);
+                completePhase(stagePhase);
             }
         }
     }
 
+    /**
+     * Starts the given phases. They are processed in parallel.
+     */
+    private void startPhases(List<Phase> phases) {
+        for (Phase phase : phases) {
+            phase.setStatus(Status.IN_FLIGHT);
+            updatePhase(phase);
+
+            phasesCounter.put(phase.getIndex(), new AtomicInteger(0));
+        }
+
+        // Update the build first so that all the commands share the same snapshot.
+        int order = phasePlugins.get(0).order();
+
+        for (Phase phase : phases) {
+            // Start processing phase.
+            phase.addRunResult();
+            eb.send(CommandKey.RUN_PHASE.getAddress(order), runPhaseCommand(phase), EventCodec.OPTIONS);
+        }
+    }
+
+    /**
+     * Starts the phases that were waiting on the completed phase, or cancels them if the phase didn't succeed.
+     */
+    private void completePhase(Phase phase) {
+        List<Phase> canceled = new ArrayList<>();
+        List<Phase> ready = phaseGraph.complete(phase.getIndex(), canceled);
+
+        canceled.forEach(this::updatePhase);
+
+        if (phaseGraph.isComplete()) {
+            // Update DB.
+            sendPatch();
+
+            process(null);
+
+        } else {
+            startPhases(ready);
+
+            // Send updates about the phases to DB.
+            sendPatch();
+        }
+    }
+
     private void skipFromSetupToTearDown() {
         // Eject SETUP state.
         statesQueue.poll();
@@ -265,7 +318,7 @@ class Flow implements Shareable {
                     build.markForComplete();
 
                     // Update DB again.
-                    eb.send(BUILD_UPDATE_ADDRESS, build.json());
+                    sendCheckpoint();
                 }
 
                 // Notify flow end event.
@@ -273,7 +326,7 @@ class Flow implements Shareable {
 
             } else {
                 int order = tearDownPlugins.get(counter).order();
-                eb.send(CommandKey.TEAR_DOWN.getAddress(order), tearDownCommand());
+                eb.send(CommandKey.TEAR_DOWN.getAddress(order), tearDownCommand(), EventCodec.OPTIONS);
             }
 
         } else {
@@ -306,30 +359,27 @@ class Flow implements Shareable {
             }
 
             if (event.hasStages()) {
-                JsonArray stages = event.getStages();
+                try {
+                    phaseGraph = PhaseGraph.of(event.getStages());
 
-                JsonArray allPhasesJson = new JsonArray();
-                build.setPhases(allPhasesJson);
+                } catch (IllegalArgumentException ex) {
+                    logger.error("Invalid pipeline for build: " + build.getID(), ex);
+                    build.markForFailure();
 
-                for (int s = 0; s < stages.size(); s++) {
-                    JsonArray phasesJson = stages.getJsonArray(s);
+                    // Update DB.
+                    sendCheckpoint();
 
-                    List<Phase> phases = new ArrayList<>();
-                    stagesQueue.add(phases);
-
-                    for (int p = 0; p < phasesJson.size(); p++) {
-                        Phase phase = new Phase(phasesJson.getJsonObject(p))
-                                .setStatus(Status.PARKED);
+                    return false;
+                }
 
-                        phases.add(phase);
+                JsonArray allPhasesJson = new JsonArray();
+                build.setPhases(allPhasesJson);
 
-                        allPhasesJson.add(Build.BuildPhase.fromPhase(phase).json());
-                    }
-                }
+                phaseGraph.phases().forEach(phase -> allPhasesJson.add(Build.BuildPhase.fromPhase(phase).json()));
             }
 
             // Update DB.
-            eb.send(BUILD_UPDATE_ADDRESS, build.json());
+            sendCheckpoint();
 
             return true;
 
@@ -337,7 +387,7 @@ class Flow implements Shareable {
             build.markForFailure();
 
             // Update DB.
-            eb.send(BUILD_UPDATE_ADDRESS, build.json());
+            sendCheckpoint();
 
             return false;
         }
@@ -349,6 +399,10 @@ class Flow implements Shareable {
             // The plugin can update the repo's metadata.
             build.getRepository()
                     .updateChildRepository(event.getChildRepository());
+
+            // Repositories are not part of a patch.
+            checkpointNeeded = true;
+            buildSnapshot = null;
         }
 
         if (event.getStatusCode() == 200) {
@@ -366,16 +420,23 @@ class Flow implements Shareable {
                 }
             }
 
+            if (eventPhase.isCached()) {
+                stagePhase.setCachedFrom(eventPhase.getCachedFrom());
+
+            } else if (eventPhase.hasCacheKey()) {
+                stagePhase.setCacheKey(eventPhase.getCacheKey());
+            }
+
             return true;
 
         } else {
             stagePhase.updateRunResult(Status.FAILED);
             stagePhase.setStatus(Status.FAILED);
 
-            build.updatePhase(stagePhase);
+            updatePhase(stagePhase);
 
             // Update DB.
-            eb.send(BUILD_UPDATE_ADDRESS, build.json());
+            sendPatch();
 
             return false;
         }
@@ -383,12 +444,11 @@ class Flow implements Shareable {
 
     private void updateBuildFromAdhocPhaseUpdateEvent(Event adhocEvent) {
         Phase eventPhase = adhocEvent.getPhase();
-        List<Phase> stage = stagesQueue.peek();
 
-        if (eventPhase == null || stage == null) return;
+        if (eventPhase == null || phaseGraph == null) return;
 
         if (adhocEvent.getStatusCode() == 200) {
-            Phase stagePhase = stage.get(eventPhase.getIndex());
+            Phase stagePhase = phaseGraph.get(eventPhase.getIndex());
 
             if (eventPhase.hasContainerID()) {
                 stagePhase.setContainerID(eventPhase.getContainerID());
@@ -401,43 +461,85 @@ class Flow implements Shareable {
                     stagePhase.setContainerPort(eventPhase.getContainerPort());
                 }
 
-                build.updatePhase(stagePhase);
+                updatePhase(stagePhase);
 
                 // Update DB.
-                eb.send(BUILD_UPDATE_ADDRESS, build.json());
+                sendPatch();
             }
         }
     }
 
-    private void verifyStageCompletion(List<Phase> stage) {
-        if (isStageComplete(stage)) {
-            // We are done with the current stage.
-            stagesQueue.poll();
-
-            if (!isStageSuccess(stage)) {
-                // No point in running the next stage.
-                for (List<Phase> nextStage : stagesQueue) {
-                    // Mark all next stages as cancelled.
-                    nextStage.forEach(phase -> {
-                        phase.setStatus(Status.CANCELED);
-                        build.updatePhase(phase);
-                    });
-                }
+    /**
+     * Lets later builds reuse the result of a phase that ran successfully with a cache key. Calls the handler once
+     * the outputs of the phase are copied, or right away if there's nothing to cache. Failures only cost the reuse.
+     */
+    private void cachePhaseResult(Phase phase, Handler<Void> handler) {
+        if (phase.getStatus() != Status.DONE || !phase.hasCacheKey() || phase.isCached()) {
+            handler.handle(null);
+            return;
+        }
+
+        Command command = new Command()
+                .setBuild(snapshot())
+                .setPhase(new Phase(phase.json().copy()));
 
-                stagesQueue.clear();
+        eb.send(PHASE_CACHE_STORE_ADDRESS, command.json(), CACHE_STORE_OPTIONS, rh -> {
+            if (rh.failed()) {
+                logger.warn("Unable to cache the result of phase: " + phase.getID(), rh.cause());
             }
 
-            // Update DB.
-            eb.send(BUILD_UPDATE_ADDRESS, build.json());
+            handler.handle(null);
+        });
+    }
 
-            process(null);
+    private void updatePhase(Phase phase) {
+        build.updatePhase(phase);
+        changedPhaseIDs.add(phase.getID());
+
+        buildSnapshot = null;
+    }
+
+    /**
+     * Sends the build status and the phases changed since the last update. The full build is sent
+     * periodically, and whenever something other than the phases changed.
+     */
+    private void sendPatch() {
+        buildSnapshot = null;
+
+        if (checkpointNeeded || ++patchCount >= CHECKPOINT_INTERVAL) {
+            sendCheckpoint();
+            return;
         }
+
+        eb.send(BUILD_UPDATE_ADDRESS, BuildPatch.of(build, changedPhaseIDs).json(), PATCH_OPTIONS);
+        changedPhaseIDs.clear();
+    }
+
+    private void sendCheckpoint() {
+        eb.send(BUILD_UPDATE_ADDRESS, build.json());
+        buildSnapshot = null;
+
+        changedPhaseIDs.clear();
+        patchCount = 0;
+        checkpointNeeded = false;
+    }
+
+    /**
+     * Commands are passed to the plugins without copying (see {@link EventCodec}), so they get a snapshot
+     * of the build that is never modified. The snapshot is shared until the build changes.
+     */
+    private Build snapshot() {
+        if (buildSnapshot == null) {
+            buildSnapshot = build.json().copy();
+        }
+
+        return new Build(buildSnapshot);
     }
 
     private JsonObject setupCommand() {
         Command command = new Command()
                 .setCommandKey(CommandKey.SETUP)
-                .setBuild(build)
+                .setBuild(snapshot())
                 .setScript(script);
 
         return command.json();
@@ -446,9 +548,10 @@ class Flow implements Shareable {
     private JsonObject runPhaseCommand(Phase phase) {
         Command command = new Command()
                 .setCommandKey(CommandKey.RUN_PHASE)
-                .setBuild(build);
+                .setBuild(snapshot());
 
-        command.setPhase(phase);
+        // Plugins update the phase they get, e.g. with the container details.
+        command.setPhase(new Phase(phase.json().copy()));
 
         return command.json();
     }
@@ -456,19 +559,8 @@ class Flow implements Shareable {
     private JsonObject tearDownCommand() {
         Command command = new Command()
                 .setCommandKey(CommandKey.TEAR_DOWN)
-                .setBuild(build);
+                .setBuild(snapshot());
 
         return command.json();
     }
-
-    private boolean isStageComplete(List<Phase> stage) {
-        return stage.stream().allMatch(p -> {
-            Status status = p.getFinalResult();
-            return status == Status.DONE || status == Status.FAILED || status == Status.CANCELED;
-        });
-    }
-
-    private boolean isStageSuccess(List<Phase> stage) {
-        return stage.stream().allMatch(p -> p.getStatus() == Status.DONE);
-    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.engine;
+
+import io.buildpal.core.domain.Phase;
+import io.buildpal.core.domain.Status;
+import io.vertx.core.json.JsonArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Dependency graph of the phases of a pipeline instance. A phase is ready to run as soon as the phases it
+ * depends on are done, so the critical path decides how long the pipeline takes, not the slowest phase of
+ * every stage.
+ *
+ * Phases that don't declare their dependencies depend on all the phases of the previous stage, which
+ * keeps the behavior of pipelines written as plain stages.
+ */
+class PhaseGraph {
+    private final List<Phase> phases;
+    private final List<List<Integer>> dependents;
+    private final int[] pendingDependencies;
+
+    private int remaining;
+
+    private PhaseGraph(List<Phase> phases, List<List<Integer>> dependents, int[] pendingDependencies) {
+        this.phases = phases;
+        this.dependents = dependents;
+        this.pendingDependencies = pendingDependencies;
+        this.remaining = phases.size();
+    }
+
+    /**
+     * Builds the graph from the stages of the pipeline.
+     *
+     * @throws IllegalArgumentException if a phase depends on an unknown phase or the dependencies have a cycle.
+     */
+    static PhaseGraph of(JsonArray stages) {
+        List<Phase> phases = new ArrayList<>();
+        List<List<Integer>> stageIndexes = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+
+        for (int s=0; s<stages.size(); s++) {
+            JsonArray phasesJson = stages.getJsonArray(s);
+            List<Integer> stage = new ArrayList<>();
+
+            for (int p=0; p<phasesJson.size(); p++) {
+                Phase phase = new Phase(phasesJson.getJsonObject(p))
+                        .setStatus(Status.PARKED)
+                        .setIndex(phases.size());
+
+                indexes.put(phase.getID(), phase.getIndex());
+                stage.add(phase.getIndex());
+                phases.add(phase);
+            }
+
+            stageIndexes.add(stage);
+        }
+
+        List<List<Integer>> dependents = new ArrayList<>();
+        phases.forEach(phase -> dependents.add(new ArrayList<>()));
+
+        int[] pendingDependencies = new int[phases.size()];
+
+        for (int s=0; s<stageIndexes.size(); s++) {
+            for (int index : stageIndexes.get(s)) {
+                JsonArray dependsOn = phases.get(index).getDependsOn();
+                List<Integer> dependencies = new ArrayList<>();
+
+                if (dependsOn == null) {
+                    if (s > 0) dependencies.addAll(stageIndexes.get(s - 1));
+
+                } else {
+                    for (int d=0; d<dependsOn.size(); d++) {
+                        Integer dependency = indexes.get(dependsOn.getString(d));
+
+                        if (dependency == null) {
+                            throw new IllegalArgumentException(String.format("Phase %s depends on an unknown phase: %s",
+                                    phases.get(index).getID(), dependsOn.getString(d)));
+                        }
+
+                        dependencies.add(dependency);
+                    }
+                }
+
+                for (int dependency : dependencies) {
+                    dependents.get(dependency).add(index);
+                    pendingDependencies[index]++;
+                }
+            }
+        }
+
+        verifyAcyclic(phases, dependents, pendingDependencies);
+
+        return new PhaseGraph(phases, dependents, pendingDependencies);
+    }
+
+    List<Phase> phases() {
+        return phases;
+    }
+
+    Phase get(int index) {
+        return phases.get(index);
+    }
+
+    boolean isComplete() {
+        return remaining == 0;
+    }
+
+    /**
+     * @return the phases that don't depend on other phases.
+     */
+    List<Phase> roots() {
+        List<Phase> roots = new ArrayList<>();
+
+        for (int p=0; p<phases.size(); p++) {
+            if (pendingDependencies[p] == 0) roots.add(phases.get(p));
+        }
+
+        return roots;
+    }
+
+    /**
+     * Marks the phase as complete. If the phase is done, its dependents with no other pending dependencies
+     * become ready. Otherwise all the phases that depend on it, directly or not, are canceled.
+     *
+     * @param canceled collects the canceled phases.
+     * @return the phases ready to run.
+     */
+    List<Phase> complete(int index, List<Phase> canceled) {
+        remaining--;
+
+        List<Phase> ready = new ArrayList<>();
+        boolean done = phases.get(index).getStatus() == Status.DONE;
+
+        for (int dependent : dependents.get(index)) {
+            if (!done) {
+                cancel(dependent, canceled);
+
+            } else if (--pendingDependencies[dependent] == 0 && phases.get(dependent).getStatus() == Status.PARKED) {
+                ready.add(phases.get(dependent));
+            }
+        }
+
+        return ready;
+    }
+
+    private void cancel(int index, List<Phase> canceled) {
+        Phase phase = phases.get(index);
+
+        if (phase.getStatus() != Status.PARKED) return;
+
+        phase.setStatus(Status.CANCELED);
+        canceled.add(phase);
+        remaining--;
+
+        for (int dependent : dependents.get(index)) {
+            cancel(dependent, canceled);
+        }
+    }
+
+    private static void verifyAcyclic(List<Phase> phases, List<List<Integer>> dependents, int[] pendingDependencies) {
+        int[] pending = pendingDependencies.clone();
+        Queue<Integer> ready = new LinkedList<>();
+
+        for (int p=0; p<pending.length; p++) {
+            if (pending[p] == 0) ready.add(p);
+        }
+
+        int visited = 0;
+
+        while (!ready.isEmpty()) {
+            int index = ready.poll();
+            visited++;
+
+            for (int dependent : dependents.get(index)) {
+                if (--pending[dependent] == 0) ready.add(dependent);
+            }
+        }
+
+        if (visited < phases.size()) {
+            throw new IllegalArgumentException("Phase dependencies should not have a cycle.");
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.engine;
+
+import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.Status;
+import io.buildpal.core.domain.Workspace;
+import io.buildpal.node.router.BuildRouter;
+import io.buildpal.node.router.PipelineRouter;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
+import static io.buildpal.core.config.Constants.ITEM;
+import static io.buildpal.core.config.Constants.ITEMS;
+import static io.buildpal.core.config.Constants.NODE;
+import static io.buildpal.core.domain.Build.BUILD;
+import static io.buildpal.core.domain.Entity.ID;
+import static io.buildpal.core.domain.Pipeline.JS;
+import static io.buildpal.core.util.ResultUtils.msgFailed;
+import static io.buildpal.node.engine.Engine.ABORT;
+import static io.buildpal.node.engine.Engine.DELETE;
+import static io.buildpal.node.engine.Engine.START_ON_NODE;
+import static io.buildpal.node.engine.EngineLoad.BUILDS;
+
+/**
+ * Queues parked builds and dispatches them to the engines that advertise free slots. Among those engines, the one
+ * with the best {@link EngineLoad#score} wins, weighing the build's workspace locality against the node's load.
+ *
+ * The queue is backed by the builds collection: builds stay PARKED until an engine picks them up, so they are
+ * re-queued when the scheduler restarts. So are WAITING builds, as an engine's admission queue is only held in memory,
+ * but only if no engine lists them in its heartbeats within the engine timeout. Builds that an engine lists are
+ * tracked as running there instead of being sent again.
+ * The next build to go is the one whose user has the fewest running builds. Ties are broken by priority (clamped to
+ * {@link Build#MIN_PRIORITY} to {@link Build#MAX_PRIORITY}), then by the fewest running builds of the pipeline and
+ * then by arrival.
+ */
+public class Scheduler extends AbstractVerticle {
+    private static final Logger logger = LoggerFactory.getLogger(Scheduler.class);
+
+    public static final String SCHEDULE = "pipeline.instance.schedule";
+    public static final String HEARTBEAT = "pipeline.engine.heartbeat";
+    public static final String ENDED = "pipeline.instance.ended";
+
+    public static final String SCRIPT = "script";
+
+    private static final String REQUEUE_QUERY = "status eq \"PARKED\" or status eq \"WAITING\"";
+
+    private final List<QueuedBuild> queue = new ArrayList<>();
+    private final Map<String, QueuedBuild> dispatched = new HashMap<>();
+    private final Map<String, EngineLoad> engines = new HashMap<>();
+
+    // WAITING builds found on restart, by ID. They may still be in the admission queue of a live engine.
+    private final Map<String, QueuedBuild> unclaimed = new HashMap<>();
+
+    private final Map<String, Integer> runningByUser = new HashMap<>();
+    private final Map<String, Integer> runningByPipeline = new HashMap<>();
+
+    private final Comparator<QueuedBuild> fairShare = Comparator
+            .<QueuedBuild>comparingInt(q -> count(runningByUser, q.user))
+            .thenComparing(Comparator.<QueuedBuild>comparingInt(q -> q.priority).reversed())
+            .thenComparingInt(q -> count(runningByPipeline, q.pipelineID))
+            .thenComparingLong(q -> q.sequence);
+
+    private long sequence;
+    private long engineTimeout;
+    private long minFreeMemory;
+    private double localityWeight;
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        try {
+            JsonObject schedulerConfig = config().getJsonObject(NODE, EMPTY_JSON)
+                    .getJsonObject("scheduler", EMPTY_JSON);
+
+            engineTimeout = schedulerConfig.getLong("engineTimeout", 15000L);
+            minFreeMemory = schedulerConfig.getLong("minFreeMemory", 512L * 1024 * 1024);
+            localityWeight = schedulerConfig.getDouble("localityWeight", 0.5);
+
+            vertx.eventBus().<JsonObject>consumer(SCHEDULE, mh -> {
+                enqueue(mh.body());
+                dispatch();
+            });
+
+            vertx.eventBus().<JsonObject>consumer(HEARTBEAT, mh -> {
+                heartbeat(mh.body());
+                dispatch();
+            });
+
+            vertx.eventBus().<JsonObject>consumer(ENDED, mh -> {
+                release(dispatched.remove(mh.body().getString(ID)));
+                dispatch();
+            });
+
+            // Aborted or deleted builds that are still waiting never reach an engine.
+            vertx.eventBus().<JsonObject>consumer(ABORT, mh -> dequeue(mh.body().getString(ID)));
+            vertx.eventBus().<JsonObject>consumer(DELETE, mh -> dequeue(mh.body().getString(ID)));
+
+            vertx.setPeriodic(engineTimeout, ph -> expireEngines());
+
+            requeueParkedBuilds();
+
+            startFuture.complete();
+
+        } catch (Exception ex) {
+            logger.error("Unable to start build scheduler", ex);
+            startFuture.fail(ex);
+        }
+    }
+
+    private void requeueParkedBuilds() {
+        JsonObject request = new JsonObject().put("q", REQUEUE_QUERY);
+
+        vertx.eventBus().<JsonObject>send(BuildRouter.FIND_ADDRESS, request, fh -> {
+            if (fh.failed()) {
+                // The routers are configured after the verticles are deployed. Try again a little later.
+                vertx.setTimer(engineTimeout, th -> requeueParkedBuilds());
+                return;
+            }
+
+            if (msgFailed(fh)) {
+                logger.error("Unable to find parked or waiting builds. Error: " + fh.result().body());
+                return;
+            }
+
+            JsonArray builds = fh.result().body().getJsonArray(ITEMS);
+
+            for (int b=0; b<builds.size(); b++) {
+                JsonObject build = builds.getJsonObject(b);
+
+                // Reserve the place in the queue now, the script arrives later.
+                long place = sequence++;
+
+                JsonObject pipeline = new JsonObject().put(ID, new Build(build).getPipelineID());
+
+                vertx.eventBus().<JsonObject>send(PipelineRouter.DOWNLOAD_JS_ADDRESS, pipeline, dh -> {
+                    String script = msgFailed(dh) ? null : dh.result().body().getJsonObject(ITEM).getString(JS);
+                    JsonObject message = new JsonObject().put(BUILD, build).put(SCRIPT, script);
+
+                    if (new Build(build).getStatus() == Status.WAITING) {
+                        holdUnclaimed(new QueuedBuild(new Build(build), message, place));
+
+                    } else {
+                        enqueue(message, place);
+                        dispatch();
+                    }
+                });
+            }
+
+            if (!builds.isEmpty()) {
+                logger.info("Parked and waiting builds re-queued. Count: " + builds.size());
+            }
+        });
+    }
+
+    private void enqueue(JsonObject message) {
+        enqueue(message, sequence++);
+    }
+
+    private void enqueue(JsonObject message, long place) {
+        Build build = new Build(message.getJsonObject(BUILD));
+        String id = build.getID();
+
+        if (dispatched.containsKey(id) || unclaimed.containsKey(id) || queue.stream().anyMatch(q -> q.id.equals(id))) {
+            return;
+        }
+
+        queue.add(new QueuedBuild(build, message, place));
+    }
+
+    /**
+     * Gives the engines a full timeout to list the build in their heartbeats before it is queued again.
+     */
+    private void holdUnclaimed(QueuedBuild build) {
+        unclaimed.put(build.id, build);
+
+        vertx.setTimer(engineTimeout, th -> {
+            if (unclaimed.remove(build.id) == null) return;
+
+            enqueue(build.message, build.sequence);
+            dispatch();
+        });
+    }
+
+    private void dequeue(String id) {
+        queue.removeIf(q -> q.id.equals(id));
+        unclaimed.remove(id);
+    }
+
+    private void heartbeat(JsonObject heartbeat) {
+        String node = heartbeat.getString(NODE);
+
+        if (node == null) return;
+
+        engines.computeIfAbsent(node, n -> new EngineLoad(n, engineTimeout)).update(heartbeat);
+
+        adopt(node, heartbeat.getJsonArray(BUILDS, new JsonArray()));
+    }
+
+    /**
+     * Tracks the queued builds that the engine already holds, e.g. after the scheduler restarted, as running there.
+     */
+    private void adopt(String node, JsonArray builds) {
+        if (builds.isEmpty() || (queue.isEmpty() && unclaimed.isEmpty())) return;
+
+        Set<Object> ids = new HashSet<>(builds.getList());
+        List<QueuedBuild> held = new ArrayList<>();
+
+        unclaimed.values().removeIf(q -> ids.contains(q.id) && held.add(q));
+        queue.removeIf(q -> ids.contains(q.id) && held.add(q));
+
+        held.forEach(build -> track(build, node));
+    }
+
+    private void track(QueuedBuild build, String node) {
+        build.node = node;
+
+        dispatched.put(build.id, build);
+        runningByUser.merge(build.user, 1, Integer::sum);
+        runningByPipeline.merge(build.pipelineID, 1, Integer::sum);
+    }
+
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            if (engines.values().stream().noneMatch(e -> e.canRun(minFreeMemory))) return;
+
+            QueuedBuild next = queue.stream().min(fairShare).orElse(null);
+            EngineLoad engine = selectEngine(next);
+
+            queue.remove(next);
+
+            track(next, engine.getNode());
+            engine.reserveSlot(next.id);
+
+            vertx.eventBus().send(String.format(START_ON_NODE, next.node), next.message);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Build " + next.id + " dispatched to: " + next.node +
+                        (engine.hasWorkspace(next.workspaceID) ? " (warm workspace)" : ""));
+            }
+        }
+    }
+
+    private EngineLoad selectEngine(QueuedBuild build) {
+        return engines.values().stream()
+                .filter(e -> e.canRun(minFreeMemory))
+                .max(Comparator.comparingDouble(e -> e.score(build.workspaceID, localityWeight)))
+                .orElse(null);
+    }
+
+    private void release(QueuedBuild build) {
+        if (build == null) return;
+
+        EngineLoad engine = engines.get(build.node);
+
+        if (engine != null) {
+            engine.releaseSlot(build.id);
+        }
+
+        runningByUser.computeIfPresent(build.user, (k, v) -> v > 1 ? v - 1 : null);
+        runningByPipeline.computeIfPresent(build.pipelineID, (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    private void expireEngines() {
+        long now = System.currentTimeMillis();
+
+        Iterator<EngineLoad> iterator = engines.values().iterator();
+
+        while (iterator.hasNext()) {
+            EngineLoad engine = iterator.next();
+
+            if (now - engine.getLastSeen() < engineTimeout) continue;
+
+            iterator.remove();
+            logger.warn("No heartbeat from engine, it will not be sent builds: " + engine.getNode());
+
+            // Builds sent to a lost engine no longer count against their user's share.
+            Iterator<QueuedBuild> builds = dispatched.values().iterator();
+
+            while (builds.hasNext()) {
+                QueuedBuild build = builds.next();
+
+                if (engine.getNode().equals(build.node)) {
+                    builds.remove();
+                    release(build);
+                }
+            }
+        }
+    }
+
+    private static int count(Map<String, Integer> running, String key) {
+        return running.getOrDefault(key, 0);
+    }
+
+    private static class QueuedBuild {
+        private final String id;
+        private final String user;
+        private final String pipelineID;
+        private final String workspaceID;
+        private final int priority;
+        private final long sequence;
+        private final JsonObject message;
+
+        private String node;
+
+        private QueuedBuild(Build build, JsonObject message, long sequence) {
+            this.id = build.getID();
+            this.user = String.valueOf(build.getCreatedBy());
+            this.pipelineID = String.valueOf(build.getPipelineID());
+            this.workspaceID = Workspace.workspaceID(build.getCreatedBy(), build.getPipelineID());
+            this.priority = build.getPriority();
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
@@ -16,10 +16,14 @@
 
 package io.buildpal.node.router;
 
+import io.buildpal.core.query.Projection;
 import io.buildpal.core.query.QuerySpec;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.ext.auth.jwt.JWTAuth;
@@ -28,9 +32,13 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.AuthHandler;
 import io.vertx.ext.web.handler.JWTAuthHandler;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static io.buildpal.core.config.Constants.ITEMS;
+
 /**
  * Router with basic features shared across all routes.
  */
@@ -44,6 +52,8 @@ public abstract class BaseRouter {
     private static final String ERRORS = "errors";
     private static final String CONTENT_LENGTH = "Content-Length";
 
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     protected final Vertx vertx;
     protected final Router router;
     protected final Logger logger;
@@ -80,6 +90,29 @@ public abstract class BaseRouter {
         writeResponse(routingContext, result, 200);
     }
 
+    /**
+     * Streams the result items with chunked encoding, one item at a time, so a large result set is never
+     * encoded into a single string. Items are reduced to the projected fields (if any) as they are encoded.
+     */
+    public static void writeResponse(RoutingContext routingContext, JsonObject result, Projection projection) {
+        if (hasErrors(result) || !(result.getValue(ITEMS) instanceof JsonArray)) {
+            writeResponse(routingContext, result);
+            return;
+        }
+
+        Map<String, Object> envelope = new LinkedHashMap<>(result.getMap());
+        List<?> items = ((JsonArray) envelope.remove(ITEMS)).getList();
+
+        // Open the envelope and the items array: {"errors":[],"items":[
+        String head = new JsonObject(envelope).encode();
+        head = head.substring(0, head.length() - 1) + (envelope.isEmpty() ? "" : ",") + "\"" + ITEMS + "\":[";
+
+        HttpServerResponse response = routingContext.response();
+        response.setStatusCode(200).setChunked(true);
+
+        new ItemWriter(response, items, projection, Buffer.buffer(CHUNK_SIZE).appendString(head)).write();
+    }
+
     public static void write201Response(RoutingContext routingContext, JsonObject result) {
         writeResponse(routingContext, result, 201);
     }
@@ -89,7 +122,7 @@ public abstract class BaseRouter {
     }
 
     public static void writeResponse(RoutingContext routingContext, JsonObject result, int statusCode) {
-        if (result.containsKey(ERRORS) && result.getJsonArray(ERRORS).size() > 0) {
+        if (hasErrors(result)) {
             writeErrorResponse(routingContext, result.toString());
 
         } else {
@@ -130,4 +163,71 @@ public abstract class BaseRouter {
     static QuerySpec buildQuerySpec(HttpServerRequest request) {
         return new QuerySpec(request.params());
     }
+
+    private static boolean hasErrors(JsonObject result) {
+        return result.containsKey(ERRORS) && result.getJsonArray(ERRORS).size() > 0;
+    }
+
+    /**
+     * Encodes items into bounded chunks and pauses while the response write queue is full.
+     */
+    private static class ItemWriter {
+        private final HttpServerResponse response;
+        private final List<?> items;
+        private final Projection projection;
+
+        private Buffer chunk;
+        private int next;
+        private boolean ended;
+
+        ItemWriter(HttpServerResponse response, List<?> items, Projection projection, Buffer chunk) {
+            this.response = response;
+            this.items = items;
+            this.projection = projection;
+            this.chunk = chunk;
+        }
+
+        void write() {
+            if (ended) return;
+
+            while (next < items.size()) {
+                // Stop encoding when the client goes away.
+                if (response.closed()) return;
+
+                if (next > 0) chunk.appendString(",");
+                chunk.appendString(encode(items.get(next++)));
+
+                if (chunk.length() >= CHUNK_SIZE) {
+                    response.write(chunk);
+                    chunk = Buffer.buffer(CHUNK_SIZE);
+
+                    if (response.writeQueueFull()) {
+                        response.drainHandler(v -> {
+                            // Drain events keep coming while the rest is written; only resume once.
+                            response.drainHandler(null);
+                            write();
+                        });
+
+                        return;
+                    }
+                }
+            }
+
+            ended = true;
+
+            if (!response.closed()) {
+                response.end(chunk.appendString("]}"));
+            }
+        }
+
+        private String encode(Object item) {
+            if (item instanceof JsonObject) {
+                JsonObject jsonItem = (JsonObject) item;
+                return projection != null ? projection.apply(jsonItem).encode() : jsonItem.encode();
+
+            } else {
+                return Json.encode(item);
+            }
+        }
+    }
 }
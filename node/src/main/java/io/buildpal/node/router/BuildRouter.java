@@ -17,6 +17,7 @@
 package io.buildpal.node.router;
 
 import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.BuildPatch;
 import io.buildpal.core.domain.Status;
 import io.buildpal.core.query.QuerySpec;
 import io.buildpal.db.DbManager;
@@ -40,7 +41,9 @@ import java.time.Instant;
 import java.util.List;
 
 import static io.buildpal.core.config.Constants.BUILD_UPDATE_ADDRESS;
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
 import static io.buildpal.core.config.Constants.ITEM;
+import static io.buildpal.core.config.Constants.NODE;
 import static io.buildpal.core.config.Constants.SUBJECT;
 import static io.buildpal.core.config.Constants.SYSTEM;
 import static io.buildpal.core.config.Constants.TAIL;
@@ -49,6 +52,7 @@ import static io.buildpal.core.util.ResultUtils.addError;
 import static io.buildpal.core.util.ResultUtils.failed;
 import static io.buildpal.core.util.ResultUtils.getEntity;
 import static io.buildpal.core.util.ResultUtils.newResult;
+import static io.buildpal.core.util.ResultUtils.prepareResult;
 import static io.buildpal.node.engine.Engine.ABORT;
 import static io.buildpal.node.engine.Engine.DELETE;
 
@@ -64,12 +68,29 @@ public class BuildRouter extends CrudRouter<Build> {
     private static final String CONTAINER_ID = "containerID";
     private static final String LOGS_PATH = "/logs?id=%s&tail=%s";
 
+    private static final String BUILD_WRITES = "buildWrites";
+    private static final String FLUSH_INTERVAL = "flushInterval";
+
     private HttpClient containerLogsClient;
+    private BuildWriteBuffer writeBuffer;
 
     public BuildRouter(Vertx vertx, JWTAuth jwtAuth, List<String> authorities, DbManager dbManager) {
+        this(vertx, EMPTY_JSON, jwtAuth, authorities, dbManager);
+    }
+
+    public BuildRouter(Vertx vertx, JsonObject config, JWTAuth jwtAuth, List<String> authorities,
+                       DbManager dbManager) {
+
         super(vertx, logger, jwtAuth, authorities, dbManager, Build::new);
 
         containerLogsClient = vertx.createHttpClient(new HttpClientOptions().setReusePort(null));
+
+        // Build updates are coalesced and written behind; 0 writes every update right away.
+        long flushInterval = config.getJsonObject(NODE, EMPTY_JSON)
+                .getJsonObject(BUILD_WRITES, EMPTY_JSON)
+                .getLong(FLUSH_INTERVAL, 1000L);
+
+        writeBuffer = new BuildWriteBuffer(vertx, dbManager, flushInterval);
     }
 
     @Override
@@ -100,18 +121,48 @@ public class BuildRouter extends CrudRouter<Build> {
 
     private Handler<Message<JsonObject>> updateHandler() {
         return message -> {
-            Build build = builder.build(message.body())
-                    .setUtcLastModifiedDate(Instant.now(Clock.systemUTC()))
+            Build build;
+
+            if (message.headers().contains(BuildPatch.PATCH)) {
+                BuildPatch patch = new BuildPatch(message.body());
+                JsonObject buildJson = writeBuffer.get(patch.getID());
+
+                if (buildJson == null) {
+                    buildJson = dbManager.get(patch.getID());
+                }
+
+                if (buildJson == null) {
+                    logger.warn("Patch received for unknown build: " + patch.getID());
+                    message.reply(addError(newResult(), "Build not found: " + patch.getID()));
+                    return;
+                }
+
+                build = patch.applyTo(new Build(buildJson));
+
+            } else {
+                build = builder.build(message.body());
+            }
+
+            build.setUtcLastModifiedDate(Instant.now(Clock.systemUTC()))
                     .setLastModifiedBy(SYSTEM);
 
-            dbManager.replace(build.json(), ah -> message.reply(ah.result()));
+            writeBuffer.put(build.json());
+            message.reply(newResult());
         };
     }
 
     private Handler<Message<JsonObject>> findHandler() {
         return message -> {
             QuerySpec querySpec = new QuerySpec().setQuery(message.body().getString("q"));
-            dbManager.find(querySpec, fh -> vertx.eventBus().send(FIND_REPLY_ADDRESS, fh.result()));
+
+            dbManager.find(querySpec, fh -> {
+                if (message.replyAddress() != null) {
+                    message.reply(fh.result());
+
+                } else {
+                    vertx.eventBus().send(FIND_REPLY_ADDRESS, fh.result());
+                }
+            });
         };
     }
 
@@ -119,6 +170,7 @@ public class BuildRouter extends CrudRouter<Build> {
         return message -> {
             Build build = new Build(message.body());
 
+            writeBuffer.discard(build.getID());
             dbManager.delete(build.getID(), dh -> {});
 
             // Delete the pipeline instance asynchronously.x
@@ -126,6 +178,23 @@ public class BuildRouter extends CrudRouter<Build> {
         };
     }
 
+    @Override
+    void configureGetRoute(String collectionPath) {
+        router.route(HttpMethod.GET, collectionPath + ID_PATH).handler(routingContext -> {
+            String id = routingContext.request().getParam(ID_PARAM);
+
+            // Serve the latest version of an active build so readers don't see a stale state.
+            JsonObject activeBuild = writeBuffer.get(id);
+
+            if (activeBuild != null) {
+                writeResponse(routingContext, prepareResult(activeBuild));
+
+            } else {
+                dbManager.get(id, r -> writeResponse(routingContext, r.result()));
+            }
+        });
+    }
+
     @Override
     protected void configureDeleteRoute(String collectionPath) {
         router.route(HttpMethod.DELETE, collectionPath + ID_PATH).handler(routingContext -> {
@@ -141,6 +210,7 @@ public class BuildRouter extends CrudRouter<Build> {
                     Build build = new Build(gh.result().getJsonObject(ITEM));
 
                     if (build.canDelete()) {
+                        writeBuffer.discard(id);
                         dbManager.delete(id, r -> write202Response(routingContext, r.result()));
 
                         // Delete the pipeline instance asynchronously.
@@ -199,6 +269,14 @@ public class BuildRouter extends CrudRouter<Build> {
         router.route(HttpMethod.POST, abortPath).handler(routingContext -> {
             String id = routingContext.request().getParam(ID_PARAM);
 
+            // An active build has updates that may not be in the DB yet; abort its latest version.
+            JsonObject activeBuild = writeBuffer.get(id);
+
+            if (activeBuild != null) {
+                abort(routingContext, new Build(activeBuild.copy()));
+                return;
+            }
+
             // Pull the build from the DB to see if it can be aborted in the first place.
             dbManager.get(id, gh -> {
 
@@ -206,27 +284,28 @@ public class BuildRouter extends CrudRouter<Build> {
                     writeResponse(routingContext, gh.result());
 
                 } else {
+                    abort(routingContext, new Build(gh.result().getJsonObject(ITEM)));
+                }
+            });
+        });
+    }
 
-                    Build build = new Build(gh.result().getJsonObject(ITEM));
-
-                    if (build.canAbort()) {
-                        // Mark the pipeline instance (build) as aborted.
-                        build.markForAbort();
+    private void abort(RoutingContext routingContext, Build build) {
+        if (build.canAbort()) {
+            // Mark the pipeline instance (build) as aborted.
+            build.markForAbort();
 
-                        // Abort the build asynchronously.
-                        vertx.eventBus().<JsonObject>publish(ABORT, build.json());
+            // Abort the build asynchronously.
+            vertx.eventBus().<JsonObject>publish(ABORT, build.json());
 
-                        // Save updated build.
-                        dbManager.replace(build.json(), rh -> write202Response(routingContext, rh.result()));
+            // Save updated build. It replaces the buffered version, so a pending flush can't undo the abort.
+            writeBuffer.put(build.json(), rh -> write202Response(routingContext, rh.result()));
 
-                    } else {
-                        JsonObject result = addError(newResult(),
-                                "Cannot abort build when it is in " + build.getStatus() + " status.");
-                        writeResponse(routingContext, result);
-                    }
-                }
-            });
-        });
+        } else {
+            JsonObject result = addError(newResult(),
+                    "Cannot abort build when it is in " + build.getStatus() + " status.");
+            writeResponse(routingContext, result);
+        }
     }
 
     private void getContainerLogs(String containerID, Build.BuildPhase phase, RoutingContext routingContext) {
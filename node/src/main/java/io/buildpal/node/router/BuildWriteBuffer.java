@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.router;
+
+import io.buildpal.core.domain.Build;
+import io.buildpal.db.DbManager;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static io.buildpal.core.domain.Entity.ID;
+import static io.buildpal.core.util.ResultUtils.failed;
+import static io.buildpal.core.util.ResultUtils.newResult;
+
+/**
+ * Write-behind buffer for build updates. Only the latest version of a build is kept until the buffer is flushed,
+ * which happens on a short timer or as soon as the build reaches a terminal status.
+ *
+ * The latest version of every active build is retained after a flush, so patches can be applied to it
+ * without waiting for the DB.
+ *
+ * Not thread safe; it is expected to be used from the context of the router that owns it.
+ */
+class BuildWriteBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(BuildWriteBuffer.class);
+
+    private final Vertx vertx;
+    private final DbManager dbManager;
+    private final long flushInterval;
+
+    private final Map<String, JsonObject> active;
+    private final Set<String> pending;
+    private long timerID;
+
+    BuildWriteBuffer(Vertx vertx, DbManager dbManager, long flushInterval) {
+        this.vertx = vertx;
+        this.dbManager = dbManager;
+        this.flushInterval = flushInterval;
+
+        this.active = new HashMap<>();
+        this.pending = new LinkedHashSet<>();
+        this.timerID = -1;
+    }
+
+    void put(JsonObject buildJson) {
+        put(buildJson, null);
+    }
+
+    /**
+     * Same as {@link #put(JsonObject)}, but calls the handler once the build is saved or buffered.
+     */
+    void put(JsonObject buildJson, Handler<AsyncResult<JsonObject>> handler) {
+        String id = buildJson.getString(ID);
+
+        if (new Build(buildJson).canDelete()) {
+            // Terminal states are written right away.
+            discard(id);
+            write(buildJson, handler);
+            return;
+        }
+
+        active.put(id, buildJson);
+
+        if (flushInterval <= 0) {
+            write(buildJson, handler);
+            return;
+        }
+
+        if (handler != null) {
+            handler.handle(Future.succeededFuture(newResult()));
+        }
+
+        pending.add(id);
+
+        if (timerID == -1) {
+            timerID = vertx.setTimer(flushInterval, th -> {
+                timerID = -1;
+                flush();
+            });
+        }
+    }
+
+    /**
+     * @return the latest version of an active build, if any.
+     */
+    JsonObject get(String id) {
+        return active.get(id);
+    }
+
+    /**
+     * Drops the latest version of the build so that it doesn't overwrite a newer state, e.g. abort or delete.
+     */
+    void discard(String id) {
+        active.remove(id);
+        pending.remove(id);
+    }
+
+    void flush() {
+        for (String id : pending) {
+            write(active.get(id), null);
+        }
+
+        pending.clear();
+    }
+
+    private void write(JsonObject buildJson, Handler<AsyncResult<JsonObject>> handler) {
+        dbManager.replace(buildJson, rh -> {
+            if (failed(rh)) {
+                logger.error("Unable to save build: " + buildJson.getString(ID), rh.cause());
+            }
+
+            if (handler != null) {
+                handler.handle(rh);
+            }
+        });
+    }
+}
@@ -83,7 +83,7 @@ public class CrudRouter<E extends Entity<E>> extends BaseRouter {
     void configureGetCollectionRoute(String collectionPath) {
         router.route(HttpMethod.GET, collectionPath).handler(routingContext -> {
             QuerySpec querySpec = buildQuerySpec(routingContext.request());
-            dbManager.find(querySpec, r -> writeResponse(routingContext, r.result()));
+            dbManager.find(querySpec, r -> writeResponse(routingContext, r.result(), querySpec.getProjection()));
         });
     }
 
@@ -21,8 +21,7 @@ import io.buildpal.core.domain.Pipeline;
 import io.buildpal.core.domain.PipelineJs;
 import io.buildpal.core.domain.Status;
 import io.buildpal.db.file.PipelineManager;
-import io.buildpal.node.data.NodeTracker;
-import io.buildpal.node.engine.Engine;
+import io.buildpal.node.engine.Scheduler;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.http.HttpMethod;
@@ -31,7 +30,6 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.web.RoutingContext;
-import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,16 +37,18 @@ import java.util.List;
 import static io.buildpal.core.config.Constants.ITEM;
 import static io.buildpal.core.config.Constants.SUBJECT;
 import static io.buildpal.core.domain.Build.BUILD;
-import static io.buildpal.core.domain.Entity.CREATED_BY;
+import static io.buildpal.core.domain.Entity.ID;
 import static io.buildpal.core.domain.Pipeline.JS;
 import static io.buildpal.core.util.ResultUtils.failed;
 import static io.buildpal.core.util.ResultUtils.msgFailed;
-import static io.buildpal.node.engine.Engine.START_ON_NODE;
+import static io.buildpal.node.engine.Scheduler.SCRIPT;
 
 public class PipelineRouter extends CrudRouter<Pipeline> {
     private static final Logger logger = LoggerFactory.getLogger(PipelineRouter.class);
 
-    private static final String SCRIPT = "script";
+    public static final String DOWNLOAD_JS_ADDRESS = "pipeline.js.download";
+
+    private static final String PRIORITY_PARAM = "priority";
 
     private final PipelineManager pipelineManager;
 
@@ -67,6 +67,9 @@ public class PipelineRouter extends CrudRouter<Pipeline> {
         configureStartRoute(collectionPath);
         configureUploadRoute(collectionPath);
         configureDownloadRoute(collectionPath);
+
+        vertx.eventBus().<JsonObject>localConsumer(DOWNLOAD_JS_ADDRESS, mh ->
+                pipelineManager.downloadJs(mh.body().getString(ID), dh -> mh.reply(dh.result())));
     }
 
     private void configureStartRoute(String collectionPath) {
@@ -76,6 +79,7 @@ public class PipelineRouter extends CrudRouter<Pipeline> {
 
             String id = routingContext.request().getParam(ID_PARAM);
             JsonObject rawData = tryParseData(routingContext);
+            int priority = tryParsePriority(routingContext);
 
             // Get pipeline.
             dbManager.getGraph(id, gh -> {
@@ -92,7 +96,8 @@ public class PipelineRouter extends CrudRouter<Pipeline> {
                         }
 
                         // Save pipeline instance and send start message.
-                        saveAndStartInstance(newInstance(rawData, gh.result()), script, routingContext);
+                        saveAndStartInstance(newInstance(rawData, gh.result()).setPriority(priority), script,
+                                routingContext);
                     });
                 }
             });
@@ -137,13 +142,8 @@ public class PipelineRouter extends CrudRouter<Pipeline> {
                         .put(BUILD, buildJson)
                         .put(SCRIPT, script);
 
-                // See if user has node affinity.
-                String node = NodeTracker.ME.getNode(buildJson.getString(CREATED_BY));
-                String address = StringUtils.isBlank(node) ?
-                        Engine.START : String.format(START_ON_NODE, node);
-
-                // Asynchronously start the instance.
-                vertx.eventBus().send(address, engineMessage);
+                // Queue the instance. The scheduler starts it when an engine has a free slot.
+                vertx.eventBus().send(Scheduler.SCHEDULE, engineMessage);
             }
 
             writeResponse(routingContext, reply.result().body());
@@ -182,4 +182,14 @@ public class PipelineRouter extends CrudRouter<Pipeline> {
 
         return data;
     }
+
+    private static int tryParsePriority(RoutingContext routingContext) {
+        try {
+            int priority = Integer.parseInt(routingContext.request().getParam(PRIORITY_PARAM));
+            return Math.max(Build.MIN_PRIORITY, Math.min(priority, Build.MAX_PRIORITY));
+
+        } catch (Exception ex) {
+            return 0;
+        }
+    }
 }
@@ -27,6 +27,9 @@ module io.buildpal.node {
     requires vertx.auth.jwt;
     requires vertx.web;
 
+    requires java.management;
+    requires jdk.management;
+
     requires org.apache.commons.lang3;
 
     requires io.buildpal.auth;
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.engine;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EngineLoadTest {
+
+    private static EngineLoad engine(int running, double load, String... workspaces) {
+        return new EngineLoad("node", 60000).update(heartbeat(running, load, workspaces));
+    }
+
+    private static JsonObject heartbeat(int running, double load, String... workspaces) {
+        return new JsonObject()
+                .put("slots", 4)
+                .put("running", running)
+                .put("load", load)
+                .put("freeMemory", 1024L)
+                .put("workspaces", new JsonArray().add(workspaces.length > 0 ? workspaces[0] : "other"));
+    }
+
+    @Test
+    public void scoreTest() {
+        EngineLoad idle = engine(0, 0.1);
+        EngineLoad hot = engine(3, 1.5, "u_p");
+
+        Assert.assertTrue("Idle node should beat a hot node.", idle.score("u_p", 0.5) > hot.score("u_p", 0.5));
+
+        EngineLoad warm = engine(1, 0.2, "u_p");
+
+        Assert.assertTrue("Workspace locality should win between similar loads.",
+                warm.score("u_p", 0.5) > idle.score("u_p", 0.5));
+    }
+
+    @Test
+    public void canRunTest() {
+        EngineLoad engine = engine(3, 0.5);
+
+        Assert.assertTrue(engine.canRun(512));
+        Assert.assertFalse("Node low on memory should not be picked.", engine.canRun(2048));
+
+        engine.reserveSlot("b1");
+        Assert.assertFalse("Node without free slots should not be picked.", engine.canRun(0));
+    }
+
+    @Test
+    public void reservationTest() {
+        EngineLoad engine = engine(3, 0.5);
+        engine.reserveSlot("b1");
+
+        engine.update(heartbeat(3, 0.5));
+        Assert.assertFalse("Heartbeat sent before the build arrived should keep the reservation.", engine.canRun(0));
+
+        engine.update(heartbeat(4, 0.5).put("builds", new JsonArray().add("b1")));
+        Assert.assertFalse(engine.canRun(0));
+
+        engine.update(heartbeat(3, 0.5));
+        Assert.assertTrue("Accepted build should not be counted twice.", engine.canRun(0));
+
+        engine.reserveSlot("b2");
+        engine.releaseSlot("b2");
+        Assert.assertTrue("Released reservation should free the slot.", engine.canRun(0));
+
+        EngineLoad expiring = new EngineLoad("node", 0).update(heartbeat(3, 0.5));
+        expiring.reserveSlot("b3");
+        expiring.update(heartbeat(3, 0.5));
+        Assert.assertTrue("Timed out reservation should free the slot.", expiring.canRun(0));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.node.engine;
+
+import io.buildpal.core.domain.Phase;
+import io.buildpal.core.domain.Status;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PhaseGraphTest {
+
+    private static JsonObject phase(String id) {
+        return new JsonObject().put("_id", id);
+    }
+
+    private static JsonObject phase(String id, String... dependsOn) {
+        return phase(id).put("_dependsOn", new JsonArray(List.of(dependsOn)));
+    }
+
+    @Test
+    public void scheduleTest() {
+        // Stage 1: a, b. Stage 2: c (defaults to a and b), d (only a), root (no dependencies).
+        PhaseGraph graph = PhaseGraph.of(new JsonArray()
+                .add(new JsonArray().add(phase("a")).add(phase("b")))
+                .add(new JsonArray().add(phase("c")).add(phase("d", "a")).add(phase("root", new String[0]))));
+
+        Assert.assertEquals("Phases without dependencies should be roots.", 3, graph.roots().size());
+
+        List<Phase> canceled = new ArrayList<>();
+
+        graph.get(0).setStatus(Status.DONE);
+        List<Phase> ready = graph.complete(0, canceled);
+
+        Assert.assertEquals("Phase should not wait for the whole stage.", 1, ready.size());
+        Assert.assertEquals("Phase should not wait for the whole stage.", "d", ready.get(0).getID());
+
+        graph.get(1).setStatus(Status.FAILED);
+        ready = graph.complete(1, canceled);
+
+        Assert.assertTrue("Dependents of a failed phase should not run.", ready.isEmpty());
+        Assert.assertEquals("Dependents of a failed phase should be canceled.",
+                Status.CANCELED, graph.get(2).getStatus());
+        Assert.assertEquals("Dependents of a failed phase should be canceled.", 1, canceled.size());
+
+        graph.get(3).setStatus(Status.DONE);
+        graph.complete(3, canceled);
+        Assert.assertFalse("Graph should wait for running phases.", graph.isComplete());
+
+        graph.get(4).setStatus(Status.DONE);
+        graph.complete(4, canceled);
+        Assert.assertTrue("Graph should be complete.", graph.isComplete());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cycleTest() {
+        PhaseGraph.of(new JsonArray().add(new JsonArray().add(phase("a", "b")).add(phase("b", "a"))));
+    }
+}
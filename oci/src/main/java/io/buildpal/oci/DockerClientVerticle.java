@@ -23,6 +23,7 @@ import io.buildpal.core.pipeline.Plugin;
 import io.buildpal.core.pipeline.event.Command;
 import io.buildpal.core.pipeline.event.CommandKey;
 import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
 import io.buildpal.core.util.FileUtils;
 import io.buildpal.core.util.ResultUtils;
@@ -51,6 +52,8 @@ import static io.buildpal.core.config.Constants.BUILDPAL_DATA_VOLUME;
 import static io.buildpal.core.config.Constants.DASH;
 import static io.buildpal.core.config.Constants.DATA_FOLDER_PATH;
 import static io.buildpal.core.config.Constants.DELETE_CONTAINERS_ADDRESS;
+import static io.buildpal.core.config.Constants.DOCKER_VERTICLE;
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
 import static io.buildpal.core.config.Constants.KILL_CONTAINERS_ADDRESS;
 import static io.buildpal.core.config.Constants.TAIL;
 import static io.buildpal.core.domain.Entity.ID;
@@ -61,30 +64,33 @@ import static io.buildpal.core.util.ResultUtils.getIDs;
 public class DockerClientVerticle extends Plugin {
     private static final Logger logger = LoggerFactory.getLogger(DockerClientVerticle.class);
 
-    private static final String FIND_IMAGE = "/images/json?filters=%s";
-    private static final String PULL_IMAGE = "/images/create?fromImage=%s";
     private static final String CREATE = "/containers/create?name=%s";
     private static final String START = "/containers/%s/start";
-    private static final String WAIT = "/containers/%s/wait";
     private static final String DELETE = "/containers/%s";
     private static final String KILL = "/containers/%s/kill";
     private static final String LOGS = "/containers/%s/logs?stdout=true&stderr=true&timestamps=false&tail=%s";
 
-    private static final String STATUS_CODE = "StatusCode";
     private static final String CONTENT_TYPE = "Content-Type";
     private static final String CONTENT_JSON = "application/json";
 
-    private static final String FIND_IMAGE_ERROR = "Failed to find image: %s. Error: %s";
-    private static final String PULL_IMAGE_ERROR = "Failed to pull image: %s. Error: %s";
     private static final String CREATE_ERROR = "Failed to create container: %s. Error: %s";
     private static final String START_ERROR = "Failed to start container: %s. Error: %s";
     private static final String WAIT_ERROR = "Failed to wait for container: %s. Error: %s";
+    private static final String EXEC_ERROR = "Failed to run phase in warm container: %s. Error: %s";
     private static final String LOGS_ERROR = "Failed to get logs for container: %s.";
 
     private static final String LOGS_PATH = "/logs";
 
+    private static final String IMAGE_TTL = "imageTTL";
+    private static final String PREWARM_IMAGES = "prewarmImages";
+    private static final String PREWARM_INTERVAL = "prewarmInterval";
+    private static final String WARM_POOL = "warmPool";
+
     private JsonArray binds = new JsonArray();
     private HttpClient dockerClient;
+    private DockerImages images;
+    private DockerWarmPool warmPool;
+    private DockerEvents events;
     private String host;
     private int httpPort;
 
@@ -125,6 +131,15 @@ public class DockerClientVerticle extends Plugin {
                 .setTcpNoDelay(null);
 
         dockerClient = vertx.createHttpClient(clientOptions);
+
+        JsonObject dockerConfig = config().getJsonObject(DOCKER_VERTICLE, EMPTY_JSON);
+
+        images = new DockerImages(dockerClient, dockerConfig.getLong(IMAGE_TTL, 60000L));
+        warmPool = new DockerWarmPool(vertx, dockerClient, images, binds,
+                dockerConfig.getJsonObject(WARM_POOL, EMPTY_JSON));
+
+        // The events stream holds on to its connection, so it gets its own client.
+        events = new DockerEvents(vertx, vertx.createHttpClient(clientOptions), dockerClient, dockerConfig);
     }
 
     @Override
@@ -136,6 +151,10 @@ public class DockerClientVerticle extends Plugin {
         host = Constants.getDockerVerticleHostOrIP(config(), "localhost");
         httpPort = Constants.getDockerVerticleHttpPort(config(), 50001);
 
+        prewarmImages();
+        events.start();
+        warmPool.start();
+
         HttpServerOptions serverOptions = new HttpServerOptions().setReusePort(null);
 
         vertx.createHttpServer(serverOptions)
@@ -154,10 +173,51 @@ public class DockerClientVerticle extends Plugin {
                     .setBuildID(command.getBuild().getID())
                     .setPhase(phase);
 
-            findImage(command, phase, phaseEndEvent);
+            Phase.ContainerArgs containerArgs = phase.getContainerArgs();
+
+            // Warm containers run as the image's user, so phases that set their own user get a new container.
+            String warmContainerID = containerArgs.hasUser() ? null : warmPool.claim(containerArgs.getImage());
+
+            if (warmContainerID != null) {
+                runInWarmContainer(warmContainerID, command, phase, phaseEndEvent);
+
+            } else {
+                ensureImage(command, phase, phaseEndEvent);
+            }
         };
     }
 
+    /**
+     * Pulls the configured images at startup and then periodically, so that the first phases using them
+     * don't pay for the pull.
+     */
+    private void prewarmImages() {
+        JsonObject dockerConfig = config().getJsonObject(DOCKER_VERTICLE, EMPTY_JSON);
+        JsonArray prewarmImages = dockerConfig.getJsonArray(PREWARM_IMAGES, new JsonArray());
+
+        if (prewarmImages.isEmpty()) return;
+
+        Handler<Long> prewarm = t -> {
+            for (int i=0; i<prewarmImages.size(); i++) {
+                String image = prewarmImages.getString(i);
+
+                images.pull(image, ph -> {
+                    if (ph.failed()) {
+                        logger.warn("Unable to pre-warm image: " + image, ph.cause());
+                    }
+                });
+            }
+        };
+
+        prewarm.handle(null);
+
+        long prewarmInterval = dockerConfig.getLong(PREWARM_INTERVAL, 3600000L);
+
+        if (prewarmInterval > 0) {
+            vertx.setPeriodic(prewarmInterval, prewarm);
+        }
+    }
+
     private Handler<Message<JsonObject>> deleteContainersHandler() {
         return mh -> {
             List<String> containerIDs = getIDs(mh.body());
@@ -197,7 +257,7 @@ public class DockerClientVerticle extends Plugin {
     }
 
     private void firePhaseEndEvent(Event phaseEndEvent) {
-        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json());
+        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void firePhaseUpdateEvent(Command command, Phase phase) {
@@ -206,57 +266,20 @@ public class DockerClientVerticle extends Plugin {
                 .setBuildID(command.getBuild().getID())
                 .setPhase(phase);
 
-        vertx.eventBus().send(EventKey.PHASE_UPDATE.getAddress(), updatePhaseEvent.json());
+        vertx.eventBus().send(EventKey.PHASE_UPDATE.getAddress(), updatePhaseEvent.json(), EventCodec.OPTIONS);
     }
 
-    private void findImage(Command command, Phase phase, Event phaseEndEvent) {
-
+    private void ensureImage(Command command, Phase phase, Event phaseEndEvent) {
         String image = phase.getContainerArgs().getImage();
-        JsonObject filters = new JsonObject().put("reference", new JsonArray().add(image));
-
-        HttpClientRequest request = dockerClient.get(String.format(FIND_IMAGE, filters.encode()), r -> {
-            r.bodyHandler(bh -> {
-                if (r.statusCode() != 200) {
-                    error(String.format(FIND_IMAGE_ERROR, image, bh.toString()), phaseEndEvent, null);
-
-                } else {
-                    JsonArray images = bh.toJsonArray();
-
-                    if (images.isEmpty()) {
-                        pull(image, command, phase, phaseEndEvent);
-
-                    } else {
-                        createContainer(command, phase, phaseEndEvent);
-                    }
-                }
-            });
-        });
-
-        request.exceptionHandler(ex ->
-                error(String.format(FIND_IMAGE_ERROR, image, ""), phaseEndEvent, ex));
 
-        addHeaders(request);
-        request.end();
-    }
+        images.ensure(image, ih -> {
+            if (ih.failed()) {
+                error(ih.cause().getMessage(), phaseEndEvent, ih.cause().getCause());
 
-    private void pull(String image, Command command, Phase phase, Event phaseEndEvent) {
-
-        HttpClientRequest request = dockerClient.post(String.format(PULL_IMAGE, image), r -> {
-            r.bodyHandler(bh -> {
-                if (r.statusCode() != 200) {
-                    error(String.format(PULL_IMAGE_ERROR, image, bh.toString()), phaseEndEvent, null);
-
-                } else {
-                    createContainer(command, phase, phaseEndEvent);
-                }
-            });
+            } else {
+                createContainer(command, phase, phaseEndEvent);
+            }
         });
-
-        request.exceptionHandler(ex ->
-                error(String.format(PULL_IMAGE_ERROR, image, ""), phaseEndEvent, ex));
-
-        addHeaders(request);
-        request.end();
     }
 
     private void createContainer(Command command, Phase phase, Event phaseEndEvent) {
@@ -265,13 +288,30 @@ public class DockerClientVerticle extends Plugin {
         HttpClientRequest request = dockerClient.post(String.format(CREATE, name), r -> {
             r.bodyHandler(bh -> {
                 if (r.statusCode() != 201) {
+                    if (r.statusCode() == 404) {
+                        // The image was removed since it was last seen.
+                        images.forget(phase.getContainerArgs().getImage());
+                    }
+
                     error(String.format(CREATE_ERROR, name, bh.toString()), phaseEndEvent, null);
 
                 } else {
-                    phase.setContainerID(bh.toJsonObject().getString("Id"))
+                    String containerID = bh.toJsonObject().getString("Id");
+
+                    phase.setContainerID(containerID)
                             .setContainerHost(host)
                             .setContainerPort(httpPort);
 
+                    // Wait before starting so that the exit of a short lived container is not missed.
+                    events.await(containerID, eh -> {
+                        if (eh.failed()) {
+                            error(String.format(WAIT_ERROR, name, eh.cause().getMessage()), phaseEndEvent, null);
+
+                        } else {
+                            phaseExited(name, eh.result(), "", phaseEndEvent);
+                        }
+                    });
+
                     startContainer(name, command, phase, phaseEndEvent);
                 }
             });
@@ -289,58 +329,63 @@ public class DockerClientVerticle extends Plugin {
         HttpClientRequest request = dockerClient.post(String.format(START, name), r -> {
             r.bodyHandler(bh -> {
                 if (r.statusCode() != 204) {
+                    events.cancel(phase.getContainerID());
                     error(String.format(START_ERROR, name, bh.toString()), phaseEndEvent, null);
 
                 } else {
-                    // Send an update about the container.
+                    // Send an update about the container. Its exit is reported by the events stream.
                     firePhaseUpdateEvent(command, phase);
-
-                    waitContainer(name, phaseEndEvent);
                 }
             });
         });
 
-        request.exceptionHandler(ex ->
-                error(String.format(START_ERROR, name, ""), phaseEndEvent, ex));
+        request.exceptionHandler(ex -> {
+            events.cancel(phase.getContainerID());
+            error(String.format(START_ERROR, name, ""), phaseEndEvent, ex);
+        });
 
         addHeaders(request);
         request.end();
     }
 
-    private void waitContainer(String name, Event phaseEndEvent) {
+    /**
+     * Runs the phase in a container of the warm pool, skipping the create and start round trips.
+     */
+    private void runInWarmContainer(String containerID, Command command, Phase phase, Event phaseEndEvent) {
+        phase.setContainerID(containerID)
+                .setContainerHost(host)
+                .setContainerPort(httpPort);
 
-        HttpClientRequest request = dockerClient.post(String.format(WAIT, name), r -> {
-            r.bodyHandler(bh -> {
-                if (r.statusCode() != 200) {
-                    error(String.format(WAIT_ERROR, name, bh.toString()), phaseEndEvent, null);
+        // Send an update about the container.
+        firePhaseUpdateEvent(command, phase);
 
-                } else {
-                    // All done! Let's see if the container run was smooth or not.
-                    int containerStatusCode = bh.toJsonObject().getInteger(STATUS_CODE, -1);
+        String phasesPath = command.getBuild().getWorkspace().getPhasesPath();
 
-                    if (containerStatusCode != 0) {
-                        String error = String.format(WAIT_ERROR, name, "");
+        warmPool.run(containerID, phasesPath, phase.getMainScriptFile(), rh -> {
+            if (rh.failed()) {
+                error(String.format(EXEC_ERROR, containerID, rh.cause().getMessage()), phaseEndEvent, rh.cause());
 
-                        // A stop/kill command was used. No need to log.
-                        if (containerStatusCode == 137 || containerStatusCode == 128) {
-                            phaseEndEvent.setStatusCode(containerStatusCode).setStatusMessage(error);
+            } else {
+                phaseExited(containerID, rh.result(), "", phaseEndEvent);
+            }
+        });
+    }
 
-                        } else {
-                            logger.error(error, bh.toString());
-                            phaseEndEvent.setStatusCode(500).setStatusMessage(error);
-                        }
-                    }
+    private void phaseExited(String name, int statusCode, String details, Event phaseEndEvent) {
+        if (statusCode != 0) {
+            String error = String.format(WAIT_ERROR, name, "");
 
-                    firePhaseEndEvent(phaseEndEvent);
-                }
-            });
-        });
+            // A stop/kill command was used. No need to log.
+            if (statusCode == 137 || statusCode == 128) {
+                phaseEndEvent.setStatusCode(statusCode).setStatusMessage(error);
 
-        request.exceptionHandler(ex ->
-                error(String.format(WAIT_ERROR, name, ""), phaseEndEvent, ex));
+            } else {
+                logger.error(error, details);
+                phaseEndEvent.setStatusCode(500).setStatusMessage(error);
+            }
+        }
 
-        addHeaders(request);
-        request.end();
+        firePhaseEndEvent(phaseEndEvent);
     }
 
     private void deleteContainer(String containerID) {
@@ -433,10 +478,13 @@ public class DockerClientVerticle extends Plugin {
 
         config.put("HostConfig", new JsonObject().put("Binds", binds));
 
+        // Only the events of the phase containers are streamed.
+        config.put("Labels", new JsonObject().put(DockerEvents.LABEL, "true"));
+
         return config;
     }
 
-    private void addHeaders(HttpClientRequest request) {
+    static void addHeaders(HttpClientRequest request) {
         request.putHeader("host", "localhost");
         request.putHeader("accept", "application/json");
         request.putHeader(CONTENT_TYPE, CONTENT_JSON);
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.oci;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.parsetools.RecordParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
+import static io.buildpal.oci.DockerClientVerticle.addHeaders;
+
+/**
+ * Tells the phases when their containers exit, from a single subscription to the Docker events of the
+ * phase containers instead of a wait request (and a connection) per container. The stream is reconnected
+ * when it ends; the containers that exited in the meantime are found by inspecting them.
+ *
+ * Not thread safe: use it from the verticle's context only.
+ */
+class DockerEvents {
+    private static final Logger logger = LoggerFactory.getLogger(DockerEvents.class);
+
+    private static final String EVENTS = "/events?filters=%s";
+    private static final String EVENTS_SINCE = "/events?since=%d&filters=%s";
+    private static final String INSPECT = "/containers/%s/json";
+
+    static final String LABEL = "io.buildpal.phase";
+
+    private static final String DIE = "die";
+    private static final String OOM = "oom";
+
+    private static final String RECONNECT_DELAY = "eventsReconnectDelay";
+    private static final String SWEEP_INTERVAL = "eventsSweepInterval";
+
+    private final Vertx vertx;
+    private final HttpClient eventsClient;
+    private final HttpClient dockerClient;
+
+    private final long reconnectDelay;
+    private final long sweepInterval;
+
+    // Container ID -> handler waiting for its exit code.
+    private final Map<String, Handler<AsyncResult<Integer>>> waiters = new HashMap<>();
+    private final Set<String> outOfMemory = new HashSet<>();
+
+    // Identifies the current stream; the handlers of earlier streams are ignored.
+    private long stream;
+    private long lastEventTime;
+
+    DockerEvents(Vertx vertx, HttpClient eventsClient, HttpClient dockerClient, JsonObject config) {
+        this.vertx = vertx;
+        this.eventsClient = eventsClient;
+        this.dockerClient = dockerClient;
+
+        reconnectDelay = config.getLong(RECONNECT_DELAY, 2000L);
+        sweepInterval = config.getLong(SWEEP_INTERVAL, 300000L);
+    }
+
+    void start() {
+        connect();
+
+        // In case the stream stalls without being closed.
+        vertx.setPeriodic(sweepInterval, t -> inspectWaiters());
+    }
+
+    /**
+     * Calls the handler with the exit code of the container. Should be called before starting the container.
+     */
+    void await(String containerID, Handler<AsyncResult<Integer>> handler) {
+        waiters.put(containerID, handler);
+    }
+
+    void cancel(String containerID) {
+        waiters.remove(containerID);
+        outOfMemory.remove(containerID);
+    }
+
+    private void connect() {
+        long current = ++stream;
+
+        JsonObject filters = new JsonObject()
+                .put("type", new JsonArray().add("container"))
+                .put("event", new JsonArray().add(DIE).add(OOM))
+                .put("label", new JsonArray().add(LABEL));
+
+        String uri = lastEventTime > 0 ?
+                String.format(EVENTS_SINCE, lastEventTime, filters.encode()) : String.format(EVENTS, filters.encode());
+
+        HttpClientRequest request = eventsClient.get(uri, r -> {
+            if (r.statusCode() != 200) {
+                r.bodyHandler(bh -> disconnected(current, new Exception("Events error: " + bh.toString())));
+                return;
+            }
+
+            r.handler(RecordParser.newDelimited("\n", this::onEvent));
+            r.endHandler(v -> disconnected(current, null));
+            r.exceptionHandler(ex -> disconnected(current, ex));
+
+            // Containers that exited while there was no stream.
+            inspectWaiters();
+        });
+
+        request.exceptionHandler(ex -> disconnected(current, ex));
+
+        addHeaders(request);
+        request.end();
+    }
+
+    private void disconnected(long closed, Throwable cause) {
+        if (closed != stream) return;
+
+        // Ignore anything else from the closed stream.
+        stream++;
+
+        logger.warn("Docker events stream closed. Reconnecting in " + reconnectDelay + " ms.", cause);
+        vertx.setTimer(reconnectDelay, t -> connect());
+    }
+
+    private void onEvent(Buffer line) {
+        if (line.length() == 0) return;
+
+        JsonObject event;
+
+        try {
+            event = line.toJsonObject();
+
+        } catch (Exception ex) {
+            logger.warn("Unable to parse Docker event: " + line.toString(), ex);
+            return;
+        }
+
+        lastEventTime = Math.max(lastEventTime, event.getLong("time", 0L));
+
+        JsonObject actor = event.getJsonObject("Actor", EMPTY_JSON);
+        String containerID = actor.getString("ID", event.getString("id"));
+        String action = event.getString("Action", event.getString("status"));
+
+        if (OOM.equals(action)) {
+            if (waiters.containsKey(containerID)) {
+                outOfMemory.add(containerID);
+            }
+
+        } else if (DIE.equals(action)) {
+            String exitCode = actor.getJsonObject("Attributes", EMPTY_JSON).getString("exitCode", "-1");
+
+            try {
+                exited(containerID, Integer.parseInt(exitCode));
+
+            } catch (NumberFormatException ex) {
+                exited(containerID, -1);
+            }
+        }
+    }
+
+    private void inspectWaiters() {
+        for (String containerID : new ArrayList<>(waiters.keySet())) {
+            inspect(containerID);
+        }
+    }
+
+    private void inspect(String containerID) {
+        HttpClientRequest request = dockerClient.get(String.format(INSPECT, containerID), r -> {
+            r.bodyHandler(bh -> {
+                if (r.statusCode() == 404) {
+                    Handler<AsyncResult<Integer>> waiter = waiters.remove(containerID);
+
+                    if (waiter != null) {
+                        waiter.handle(Future.failedFuture(new Exception("Container no longer exists")));
+                    }
+
+                } else if (r.statusCode() == 200) {
+                    JsonObject state = bh.toJsonObject().getJsonObject("State", EMPTY_JSON);
+                    String status = state.getString("Status");
+
+                    // Created but not started yet containers are not running either.
+                    if ("exited".equals(status) || "dead".equals(status)) {
+                        if (state.getBoolean("OOMKilled", false)) {
+                            outOfMemory.add(containerID);
+                        }
+
+                        exited(containerID, state.getInteger("ExitCode", -1));
+                    }
+                }
+            });
+        });
+
+        request.exceptionHandler(ex -> logger.warn("Unable to inspect container: " + containerID, ex));
+
+        addHeaders(request);
+        request.end();
+    }
+
+    private void exited(String containerID, int exitCode) {
+        Handler<AsyncResult<Integer>> waiter = waiters.remove(containerID);
+
+        if (outOfMemory.remove(containerID)) {
+            logger.warn("Container ran out of memory: " + containerID);
+        }
+
+        if (waiter != null) {
+            waiter.handle(Future.succeededFuture(exitCode));
+        }
+    }
+}
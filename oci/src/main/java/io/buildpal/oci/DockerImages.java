@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.oci;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.buildpal.oci.DockerClientVerticle.addHeaders;
+
+/**
+ * Makes sure the images of the phases are present on the Docker host. Concurrent requests for an image
+ * share one pull, and images known to be present are not looked up again until their entry expires.
+ *
+ * Not thread safe: use it from the verticle's context only.
+ */
+class DockerImages {
+    private static final Logger logger = LoggerFactory.getLogger(DockerImages.class);
+
+    private static final String FIND_IMAGE = "/images/json?filters=%s";
+    private static final String PULL_IMAGE = "/images/create?fromImage=%s";
+
+    private static final String FIND_IMAGE_ERROR = "Failed to find image: %s. Error: %s";
+    private static final String PULL_IMAGE_ERROR = "Failed to pull image: %s. Error: %s";
+
+    // The pull progress is streamed, so errors after the pull started are only reported in the body.
+    private static final String ERROR_DETAIL = "\"errorDetail\"";
+
+    private final HttpClient dockerClient;
+    private final long presentTTL;
+
+    // Image -> handlers waiting for the pull in flight.
+    private final Map<String, List<Handler<AsyncResult<Void>>>> pulls = new HashMap<>();
+
+    // Image -> time (ms) until which the image is known to be present.
+    private final Map<String, Long> present = new HashMap<>();
+
+    DockerImages(HttpClient dockerClient, long presentTTL) {
+        this.dockerClient = dockerClient;
+        this.presentTTL = presentTTL;
+    }
+
+    /**
+     * Completes once the image is present, pulling it if needed.
+     */
+    void ensure(String image, Handler<AsyncResult<Void>> handler) {
+        Long presentUntil = present.get(image);
+
+        if (presentUntil != null && presentUntil > System.currentTimeMillis()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        if (pulls.containsKey(image)) {
+            pulls.get(image).add(handler);
+            return;
+        }
+
+        find(image, fh -> {
+            if (fh.failed()) {
+                handler.handle(Future.failedFuture(fh.cause()));
+
+            } else if (fh.result()) {
+                markPresent(image);
+                handler.handle(Future.succeededFuture());
+
+            } else {
+                pull(image, handler);
+            }
+        });
+    }
+
+    /**
+     * Pulls the image, or waits for the pull in flight.
+     */
+    void pull(String image, Handler<AsyncResult<Void>> handler) {
+        List<Handler<AsyncResult<Void>>> waiters = pulls.get(image);
+
+        if (waiters != null) {
+            waiters.add(handler);
+            return;
+        }
+
+        waiters = new ArrayList<>();
+        waiters.add(handler);
+        pulls.put(image, waiters);
+
+        HttpClientRequest request = dockerClient.post(String.format(PULL_IMAGE, image), r -> {
+            r.bodyHandler(bh -> {
+                if (r.statusCode() != 200 || bh.toString().contains(ERROR_DETAIL)) {
+                    String error = String.format(PULL_IMAGE_ERROR, image, bh.toString());
+                    completePull(image, Future.failedFuture(new Exception(error)));
+
+                } else {
+                    markPresent(image);
+                    completePull(image, Future.succeededFuture());
+                }
+            });
+        });
+
+        request.exceptionHandler(ex -> {
+            String error = String.format(PULL_IMAGE_ERROR, image, "");
+            completePull(image, Future.failedFuture(new Exception(error, ex)));
+        });
+
+        addHeaders(request);
+        request.end();
+    }
+
+    /**
+     * Makes the next request for the image look it up again, e.g. after it was removed from the host.
+     */
+    void forget(String image) {
+        present.remove(image);
+    }
+
+    private void find(String image, Handler<AsyncResult<Boolean>> handler) {
+        JsonObject filters = new JsonObject().put("reference", new JsonArray().add(image));
+
+        HttpClientRequest request = dockerClient.get(String.format(FIND_IMAGE, filters.encode()), r -> {
+            r.bodyHandler(bh -> {
+                if (r.statusCode() != 200) {
+                    String error = String.format(FIND_IMAGE_ERROR, image, bh.toString());
+                    handler.handle(Future.failedFuture(new Exception(error)));
+
+                } else {
+                    handler.handle(Future.succeededFuture(!bh.toJsonArray().isEmpty()));
+                }
+            });
+        });
+
+        request.exceptionHandler(ex -> {
+            String error = String.format(FIND_IMAGE_ERROR, image, "");
+            handler.handle(Future.failedFuture(new Exception(error, ex)));
+        });
+
+        addHeaders(request);
+        request.end();
+    }
+
+    private void markPresent(String image) {
+        long now = System.currentTimeMillis();
+
+        // Drop the expired entries so that images removed from the pipelines don't pile up.
+        present.values().removeIf(presentUntil -> presentUntil <= now);
+        present.put(image, now + presentTTL);
+    }
+
+    private void completePull(String image, AsyncResult<Void> result) {
+        List<Handler<AsyncResult<Void>>> waiters = pulls.remove(image);
+
+        // Already completed, e.g. the connection failed after the response.
+        if (waiters == null) return;
+
+        if (result.succeeded() && logger.isDebugEnabled()) {
+            logger.debug("Image pulled: " + image + " (shared by " + waiters.size() + " requests)");
+        }
+
+        waiters.forEach(waiter -> waiter.handle(result));
+    }
+}
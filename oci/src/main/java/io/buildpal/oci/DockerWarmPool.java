@@ -0,0 +1,331 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.oci;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
+import static io.buildpal.oci.DockerClientVerticle.addHeaders;
+
+/**
+ * Keeps paused containers of the configured images ready, with the data volume already bound, so that
+ * phases can skip creating and starting their own. A claimed container runs the phase's main script with
+ * exec, keeps its logs like any other phase container, and is replaced in the background. Idle containers
+ * are recycled after a while so that they pick up updated images.
+ *
+ * Not thread safe: use it from the verticle's context only.
+ */
+class DockerWarmPool {
+    private static final Logger logger = LoggerFactory.getLogger(DockerWarmPool.class);
+
+    private static final String LIST = "/containers/json?all=true&filters=%s";
+    private static final String CREATE = "/containers/create";
+    private static final String START = "/containers/%s/start";
+    private static final String PAUSE = "/containers/%s/pause";
+    private static final String UNPAUSE = "/containers/%s/unpause";
+    private static final String KILL = "/containers/%s/kill";
+    private static final String DELETE = "/containers/%s?force=true";
+    private static final String EXEC = "/containers/%s/exec";
+    private static final String EXEC_START = "/exec/%s/start";
+    private static final String EXEC_INSPECT = "/exec/%s/json";
+
+    private static final String LABEL = "io.buildpal.warm";
+
+    private static final String IMAGES = "images";
+    private static final String MAX_IDLE = "maxIdle";
+    private static final String CHECK_INTERVAL = "checkInterval";
+    private static final String EXEC_POLL_INTERVAL = "execPollInterval";
+
+    // Keeps the container alive until a phase claims it.
+    private static final String KEEP_ALIVE = "while :; do sleep 3600; done";
+
+    // Runs the script with its output going to the container's logs. Only the user of the keep-alive process
+    // can write to its descriptors, so the script runs as the image's user.
+    private static final String RUN_SCRIPT = "cd '%s' && ./%s > /proc/1/fd/1 2> /proc/1/fd/2";
+
+    // Exit code of a process ended by SIGKILL, which is what docker reports for killed containers.
+    private static final int KILLED = 137;
+
+    private final Vertx vertx;
+    private final HttpClient dockerClient;
+    private final DockerImages images;
+    private final JsonArray binds;
+
+    // Image -> number of idle containers to keep.
+    private final Map<String, Integer> sizes = new HashMap<>();
+
+    private final Map<String, Deque<WarmContainer>> idle = new HashMap<>();
+    private final Map<String, Integer> warming = new HashMap<>();
+
+    private final long maxIdle;
+    private final long checkInterval;
+    private final long execPollInterval;
+
+    DockerWarmPool(Vertx vertx, HttpClient dockerClient, DockerImages images, JsonArray binds, JsonObject config) {
+        this.vertx = vertx;
+        this.dockerClient = dockerClient;
+        this.images = images;
+        this.binds = binds;
+
+        JsonObject poolImages = config.getJsonObject(IMAGES, EMPTY_JSON);
+
+        for (String image : poolImages.fieldNames()) {
+            sizes.put(image, poolImages.getInteger(image));
+            idle.put(image, new ArrayDeque<>());
+        }
+
+        maxIdle = config.getLong(MAX_IDLE, 1800000L);
+        checkInterval = config.getLong(CHECK_INTERVAL, 60000L);
+        execPollInterval = config.getLong(EXEC_POLL_INTERVAL, 250L);
+    }
+
+    void start() {
+        if (sizes.isEmpty()) return;
+
+        // Containers left idle by an earlier run of the node are of no use.
+        removeLeftovers(h -> fill());
+
+        vertx.setPeriodic(checkInterval, t -> {
+            recycle();
+            fill();
+        });
+    }
+
+    /**
+     * @return ID of a paused container of the image, or null if there is none.
+     */
+    String claim(String image) {
+        Deque<WarmContainer> containers = idle.get(image);
+        WarmContainer container = containers == null ? null : containers.poll();
+
+        if (container == null) return null;
+
+        // Replace the claimed container.
+        fill();
+
+        return container.id;
+    }
+
+    /**
+     * Runs the script in a claimed container and completes with its exit code. The container is stopped
+     * afterwards.
+     */
+    void run(String containerID, String workingDir, String script, Handler<AsyncResult<Integer>> handler) {
+        JsonObject exec = new JsonObject()
+                .put("AttachStdout", false)
+                .put("AttachStderr", false)
+                .put("Cmd", new JsonArray().add("sh").add("-c").add(String.format(RUN_SCRIPT, workingDir, script)));
+
+        Future<Buffer> unpause = Future.future();
+        request(HttpMethod.POST, String.format(UNPAUSE, containerID), null, 204, unpause.completer());
+
+        unpause.compose(v -> {
+            Future<Buffer> create = Future.future();
+            request(HttpMethod.POST, String.format(EXEC, containerID), exec, 201, create.completer());
+            return create;
+
+        }).compose(created -> {
+            String execID = created.toJsonObject().getString("Id");
+            JsonObject start = new JsonObject().put("Detach", true).put("Tty", false);
+
+            Future<Buffer> started = Future.future();
+            request(HttpMethod.POST, String.format(EXEC_START, execID), start, 200, started.completer());
+
+            return started.map(execID);
+
+        }).compose(execID -> {
+            Future<Integer> exited = Future.future();
+            waitExec(execID, exited);
+            return exited;
+
+        }).setHandler(rh -> {
+            // Stop the keep-alive process. The container stays around for its logs.
+            request(HttpMethod.POST, String.format(KILL, containerID), null, 204, kh -> {});
+
+            handler.handle(rh);
+        });
+    }
+
+    private void waitExec(String execID, Future<Integer> exited) {
+        request(HttpMethod.GET, String.format(EXEC_INSPECT, execID), null, 200, rh -> {
+            if (rh.failed()) {
+                exited.fail(rh.cause());
+                return;
+            }
+
+            JsonObject inspect = rh.result().toJsonObject();
+
+            if (inspect.getBoolean("Running", false)) {
+                vertx.setTimer(execPollInterval, t -> waitExec(execID, exited));
+
+            } else {
+                // The exit code is null when the container was killed (e.g. aborted) before the exec ended.
+                Integer exitCode = inspect.getInteger("ExitCode");
+                exited.complete(exitCode == null ? KILLED : exitCode);
+            }
+        });
+    }
+
+    private void fill() {
+        sizes.forEach((image, size) -> {
+            int missing = size - idle.get(image).size() - warming.getOrDefault(image, 0);
+
+            for (int c=0; c<missing; c++) {
+                warm(image);
+            }
+        });
+    }
+
+    private void recycle() {
+        long now = System.currentTimeMillis();
+
+        idle.values().forEach(containers -> containers.removeIf(container -> {
+            if (now - container.idleSince < maxIdle) return false;
+
+            remove(container.id);
+            return true;
+        }));
+    }
+
+    private void warm(String image) {
+        warming.merge(image, 1, Integer::sum);
+
+        JsonObject config = new JsonObject()
+                .put("Image", image)
+                .put("Cmd", new JsonArray().add("sh").add("-c").add(KEEP_ALIVE))
+                .put("Labels", new JsonObject().put(LABEL, "true"))
+                .put("HostConfig", new JsonObject().put("Binds", binds));
+
+        Future<Void> present = Future.future();
+        images.ensure(image, present.completer());
+
+        present.compose(v -> {
+            Future<Buffer> create = Future.future();
+            request(HttpMethod.POST, CREATE, config, 201, create.completer());
+            return create;
+
+        }).compose(created -> {
+            String containerID = created.toJsonObject().getString("Id");
+
+            Future<Buffer> start = Future.future();
+            request(HttpMethod.POST, String.format(START, containerID), null, 204, start.completer());
+
+            return start.compose(v -> {
+                Future<Buffer> pause = Future.future();
+                request(HttpMethod.POST, String.format(PAUSE, containerID), null, 204, pause.completer());
+                return pause;
+
+            }).map(containerID).recover(ex -> {
+                remove(containerID);
+                return Future.failedFuture(ex);
+            });
+
+        }).setHandler(rh -> {
+            warming.merge(image, -1, Integer::sum);
+
+            if (rh.failed()) {
+                // Tried again at the next check.
+                logger.warn("Unable to warm a container for image: " + image, rh.cause());
+
+            } else {
+                idle.get(image).add(new WarmContainer(rh.result()));
+            }
+        });
+    }
+
+    private void removeLeftovers(Handler<AsyncResult<Void>> handler) {
+        JsonObject filters = new JsonObject()
+                .put("label", new JsonArray().add(LABEL))
+                .put("status", new JsonArray().add("paused"));
+
+        request(HttpMethod.GET, String.format(LIST, filters.encode()), null, 200, rh -> {
+            if (rh.succeeded()) {
+                JsonArray containers = rh.result().toJsonArray();
+
+                for (int c=0; c<containers.size(); c++) {
+                    remove(containers.getJsonObject(c).getString("Id"));
+                }
+
+            } else {
+                logger.warn("Unable to list the idle containers of an earlier run", rh.cause());
+            }
+
+            handler.handle(Future.succeededFuture());
+        });
+    }
+
+    private void remove(String containerID) {
+        request(HttpMethod.DELETE, String.format(DELETE, containerID), null, 204, rh -> {
+            if (rh.failed()) {
+                logger.warn("Unable to remove warm container: " + containerID, rh.cause());
+            }
+        });
+    }
+
+    private void request(HttpMethod method, String uri, JsonObject body, int expectedStatus,
+                         Handler<AsyncResult<Buffer>> handler) {
+
+        HttpClientRequest request = dockerClient.request(method, uri, r -> {
+            r.bodyHandler(bh -> {
+                if (r.statusCode() == expectedStatus) {
+                    handler.handle(Future.succeededFuture(bh));
+
+                } else {
+                    String error = String.format("%s %s failed (%d): %s", method, uri, r.statusCode(), bh);
+                    handler.handle(Future.failedFuture(new Exception(error)));
+                }
+            });
+        });
+
+        request.exceptionHandler(ex -> handler.handle(Future.failedFuture(ex)));
+
+        addHeaders(request);
+
+        if (body == null) {
+            request.end();
+
+        } else {
+            request.end(body.encode());
+        }
+    }
+
+    private static class WarmContainer {
+        private final String id;
+        private final long idleSince;
+
+        private WarmContainer(String id) {
+            this.id = id;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.workspace;
+
+import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.Phase;
+import io.buildpal.core.pipeline.Plugin;
+import io.buildpal.core.pipeline.event.Command;
+import io.buildpal.core.pipeline.event.CommandKey;
+import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
+import io.buildpal.core.pipeline.event.EventKey;
+import io.buildpal.core.util.WorkerPool;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.Objects;
+import java.util.Set;
+
+import static io.buildpal.core.config.Constants.DATA_FOLDER_PATH;
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
+import static io.buildpal.core.config.Constants.PHASE_CACHE_EVICT_ADDRESS;
+import static io.buildpal.core.config.Constants.PHASE_CACHE_STORE_ADDRESS;
+import static io.buildpal.core.domain.Entity.ID;
+import static io.buildpal.core.util.FileUtils.slashify;
+import static io.buildpal.core.util.ResultUtils.newResult;
+import static io.buildpal.workspace.PhaseResults.BUILD_ID;
+import static io.buildpal.workspace.PhaseResults.PHASE;
+
+/**
+ * Reuses the result of a phase when its definition and the contents of its declared inputs match an
+ * earlier successful build. Its declared outputs are copied back into the workspace. Runs after the
+ * pre-scripts and before the containers are started.
+ */
+public class PhaseCacheVerticle extends Plugin {
+    private final static Logger logger = LoggerFactory.getLogger(PhaseCacheVerticle.class);
+
+    private static final String PHASE_CACHE = "phaseCache";
+    private static final String MAX_ENTRIES = "maxEntries";
+
+    private PhaseResults results;
+    private WorkerPool hashPool;
+
+    @Override
+    public Set<CommandKey> commandKeysToRegister() {
+        return Set.of(CommandKey.RUN_PHASE);
+    }
+
+    @Override
+    public Logger getLogger() {
+        return logger;
+    }
+
+    @Override
+    public int order() {
+        return 25;
+    }
+
+    @Override
+    public void start() throws Exception {
+        int maxEntries = config().getJsonObject(PHASE_CACHE, EMPTY_JSON).getInteger(MAX_ENTRIES, 1024);
+
+        String dataFolderPath = Objects.requireNonNull(config().getString(DATA_FOLDER_PATH),
+                "Data folder path must be configured.");
+
+        results = new PhaseResults(new File(slashify(dataFolderPath) + PHASE_CACHE), maxEntries);
+        hashPool = WorkerPool.create(vertx, config(), "PHASE-CACHE");
+
+        vertx.eventBus().localConsumer(PHASE_CACHE_STORE_ADDRESS, storeHandler());
+        vertx.eventBus().<JsonObject>localConsumer(PHASE_CACHE_EVICT_ADDRESS, mh -> {
+            String buildID = mh.body().getString(ID);
+
+            hashPool.executeBlocking(bch -> {
+                results.evict(buildID);
+                bch.complete();
+
+            }, eh -> {
+                if (eh.failed()) {
+                    logger.warn("Unable to evict the cached phases of build: " + buildID, eh.cause());
+                }
+            });
+        });
+    }
+
+    @Override
+    protected Handler<Message<JsonObject>> phaseHandler(EventBus eb) {
+        return mh -> {
+            Command command = new Command(mh.body());
+            Build build = command.getBuild();
+            Phase phase = command.getPhase();
+
+            Event phaseEndEvent = new Event()
+                    .setKey(EventKey.PHASE_END)
+                    .setBuildID(build.getID())
+                    .setPhase(phase);
+
+            if (!isCacheable(phase)) {
+                firePhaseEndEvent(phaseEndEvent);
+                return;
+            }
+
+            File phaseDir = phaseDir(build, phase);
+
+            // Hash on the pool - the inputs might be large trees.
+            hashPool.<String>executeBlocking(bch -> {
+                try {
+                    bch.complete(PhaseResults.cacheKey(build, phase, phaseDir));
+
+                } catch (Exception ex) {
+                    bch.fail(ex);
+                }
+
+            }, kh -> {
+                if (kh.failed()) {
+                    // Just run the phase.
+                    logger.warn("Unable to compute the cache key of phase: " + phase.getID(), kh.cause());
+                    firePhaseEndEvent(phaseEndEvent);
+                    return;
+                }
+
+                phase.setCacheKey(kh.result());
+
+                // The later phases rely on the outputs, so they are put back in the workspace.
+                hashPool.<JsonObject>executeBlocking(bch -> {
+                    try {
+                        bch.complete(results.restore(phase, phaseDir));
+
+                    } catch (Exception ex) {
+                        bch.fail(ex);
+                    }
+
+                }, rh -> {
+                    if (rh.failed()) {
+                        logger.warn("Unable to restore the cached outputs of phase: " + phase.getID(), rh.cause());
+
+                    } else if (rh.result() != null) {
+                        reuse(phase, rh.result());
+                    }
+
+                    firePhaseEndEvent(phaseEndEvent);
+                });
+            });
+        };
+    }
+
+    /**
+     * Records the result of a phase that ran successfully, along with a copy of its outputs.
+     */
+    private Handler<Message<JsonObject>> storeHandler() {
+        return mh -> {
+            Command command = new Command(mh.body());
+            Build build = command.getBuild();
+            Phase phase = command.getPhase();
+
+            File phaseDir = phaseDir(build, phase);
+
+            hashPool.executeBlocking(bch -> {
+                try {
+                    results.store(build, phase, phaseDir);
+                    bch.complete();
+
+                } catch (Exception ex) {
+                    bch.fail(ex);
+                }
+
+            }, rh -> {
+                if (rh.failed()) {
+                    logger.warn("Unable to cache the result of phase: " + phase.getID(), rh.cause());
+                }
+
+                // The flow holds back the dependent phases until the outputs are copied.
+                mh.reply(newResult());
+            });
+        };
+    }
+
+    private void reuse(Phase phase, JsonObject entry) {
+        Phase cachedPhase = new Phase(entry.getJsonObject(PHASE));
+
+        phase.setCachedFrom(entry.getString(BUILD_ID));
+
+        // Point to the containers (and so the logs) of the earlier build.
+        if (cachedPhase.hasContainerID()) {
+            phase.setContainerID(cachedPhase.getContainerID());
+        }
+
+        if (cachedPhase.hasContainerHost()) {
+            phase.setContainerHost(cachedPhase.getContainerHost());
+        }
+
+        if (cachedPhase.hasContainerPort()) {
+            phase.setContainerPort(cachedPhase.getContainerPort());
+        }
+
+        logger.info("Reusing the result of phase: " + phase.getID() + " from build: " + phase.getCachedFrom());
+    }
+
+    /**
+     * Phases that build or push images have effects outside the workspace, so they always run.
+     */
+    private static boolean isCacheable(Phase phase) {
+        Phase.Docker docker = phase.getDocker();
+
+        return phase.isCacheable() && (docker == null || (!docker.buildEnabled() && !docker.pushEnabled()));
+    }
+
+    private static File phaseDir(Build build, Phase phase) {
+        String workspacePath = build.getWorkspace().getPath();
+
+        return StringUtils.isBlank(phase.getRepo()) ?
+                new File(workspacePath) : new File(slashify(workspacePath) + phase.getRepo());
+    }
+
+    private void firePhaseEndEvent(Event phaseEndEvent) {
+        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json(), EventCodec.OPTIONS);
+    }
+}
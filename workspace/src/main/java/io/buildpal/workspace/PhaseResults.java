@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.workspace;
+
+import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.Phase;
+import io.buildpal.core.util.Utils;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.buildpal.core.util.Utils.hex;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.eclipse.jgit.util.FileUtils.RECURSIVE;
+import static org.eclipse.jgit.util.FileUtils.SKIP_MISSING;
+
+/**
+ * Results of the phases that ran successfully, by cache key, along with a snapshot of their declared outputs.
+ * The workspace is cleaned (or deleted) between builds, so the outputs are copied back on a hit. Files that a
+ * phase writes outside its declared outputs are not kept.
+ *
+ * Thread safe. Hashing and copying block, so the methods are expected to be called from a worker.
+ */
+class PhaseResults {
+    static final String BUILD_ID = "buildID";
+    static final String PHASE = "phase";
+    static final String OUTPUTS_HASH = "outputsHash";
+
+    private static final String GIT_FOLDER = ".git";
+
+    private final File root;
+
+    // Cache key -> result of the phase in an earlier build.
+    private final Map<String, JsonObject> entries;
+
+    PhaseResults(File root, int maxEntries) throws IOException {
+        this.root = root;
+
+        // Entries are only kept in memory, so the snapshots of an earlier run can't be reused.
+        org.eclipse.jgit.util.FileUtils.delete(root, RECURSIVE | SKIP_MISSING);
+        Files.createDirectories(root.toPath());
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+                if (size() <= maxEntries) return false;
+
+                deleteSnapshot(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Copies the outputs of a successful phase and records its result under the phase's cache key. The stored hash
+     * is that of the copy, so that it describes exactly what is restored.
+     */
+    void store(Build build, Phase phase, File phaseDir) throws Exception {
+        String cacheKey = phase.getCacheKey();
+        JsonArray outputs = phase.getCacheOutputs();
+
+        Path snapshot = new File(root, cacheKey + "-" + Utils.newID()).toPath();
+
+        try {
+            Files.createDirectories(snapshot);
+
+            for (int o=0; o<outputs.size(); o++) {
+                copy(resolveOutput(phaseDir, outputs.getString(o)), snapshot.resolve(outputs.getString(o)));
+            }
+
+            JsonObject entry = new JsonObject()
+                    .put(BUILD_ID, build.getID())
+                    .put(PHASE, phase.json().copy())
+                    .put(OUTPUTS_HASH, hashPaths(snapshot.toFile(), outputs));
+
+            synchronized (entries) {
+                deleteSnapshot(cacheKey);
+                Files.move(snapshot, new File(root, cacheKey).toPath());
+
+                entries.put(cacheKey, entry);
+            }
+
+        } finally {
+            org.eclipse.jgit.util.FileUtils.delete(snapshot.toFile(), RECURSIVE | SKIP_MISSING);
+        }
+    }
+
+    /**
+     * Copies the outputs recorded under the phase's cache key back into the workspace.
+     *
+     * @return the result of the phase in the earlier build, or null if there is none or the outputs can't be restored.
+     */
+    JsonObject restore(Phase phase, File phaseDir) throws Exception {
+        JsonObject entry;
+
+        synchronized (entries) {
+            entry = entries.get(phase.getCacheKey());
+        }
+
+        if (entry == null) return null;
+
+        Path snapshot = new File(root, phase.getCacheKey()).toPath();
+        JsonArray outputs = phase.getCacheOutputs();
+
+        for (int o=0; o<outputs.size(); o++) {
+            Path output = resolveOutput(phaseDir, outputs.getString(o));
+
+            // Drop what's left of the output, so that the restored one is exactly what the phase wrote.
+            org.eclipse.jgit.util.FileUtils.delete(output.toFile(), RECURSIVE | SKIP_MISSING);
+            copy(snapshot.resolve(outputs.getString(o)), output);
+        }
+
+        // The snapshot may have been replaced or evicted while it was copied.
+        return hashPaths(phaseDir, outputs).equals(entry.getString(OUTPUTS_HASH)) ? entry : null;
+    }
+
+    void evict(String buildID) {
+        synchronized (entries) {
+            List<String> cacheKeys = entries.entrySet().stream()
+                    .filter(e -> buildID.equals(e.getValue().getString(BUILD_ID)))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+
+            for (String cacheKey : cacheKeys) {
+                entries.remove(cacheKey);
+                deleteSnapshot(cacheKey);
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of the phase definition and the contents of its inputs. The build ID is exported to the
+     * scripts of every phase, so it's masked to match across builds.
+     */
+    static String cacheKey(Build build, Phase phase, File phaseDir) throws Exception {
+        String definition = build.getPipelineID() + phase.definition().encode().replace(build.getID(), "");
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(definition.getBytes(StandardCharsets.UTF_8));
+        digest.update(hashPaths(phaseDir, phase.getCacheInputs()).getBytes(StandardCharsets.UTF_8));
+
+        return hex(digest.digest());
+    }
+
+    /**
+     * SHA-256 of the names and contents of the files under the given paths, skipping Git metadata.
+     */
+    static String hashPaths(File dir, JsonArray paths) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Path root = dir.getCanonicalFile().toPath();
+
+        byte[] buffer = new byte[8192];
+
+        for (int p=0; p<paths.size(); p++) {
+            Path path = resolve(dir, paths.getString(p));
+
+            digest.update(paths.getString(p).getBytes(StandardCharsets.UTF_8));
+
+            for (Path file : files(root, path)) {
+                digest.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+
+                try (InputStream in = Files.newInputStream(file)) {
+                    int read;
+
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+        }
+
+        return hex(digest.digest());
+    }
+
+    private static Path resolve(File dir, String relativePath) throws IOException {
+        Path root = dir.getCanonicalFile().toPath();
+        Path path = root.resolve(relativePath).normalize();
+
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Cache path is outside the workspace: " + relativePath);
+        }
+
+        return path;
+    }
+
+    /**
+     * Outputs are replaced on a hit, so an output can't be the whole repo.
+     */
+    private static Path resolveOutput(File dir, String relativePath) throws IOException {
+        Path path = resolve(dir, relativePath);
+
+        if (path.equals(dir.getCanonicalFile().toPath())) {
+            throw new IllegalArgumentException("Cache output should be a path inside the workspace: " + relativePath);
+        }
+
+        return path;
+    }
+
+    /**
+     * @return the regular files under the path, in a stable order, skipping Git metadata.
+     */
+    private static List<Path> files(Path root, Path path) throws IOException {
+        if (!Files.exists(path)) return List.of();
+
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> !isGitMetadata(root.relativize(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        Path sourceRoot = source.getParent();
+
+        for (Path file : files(sourceRoot, source)) {
+            Path targetFile = target.resolve(source.relativize(file));
+
+            Files.createDirectories(targetFile.getParent());
+            Files.copy(file, targetFile, REPLACE_EXISTING, COPY_ATTRIBUTES);
+        }
+    }
+
+    private void deleteSnapshot(String cacheKey) {
+        try {
+            org.eclipse.jgit.util.FileUtils.delete(new File(root, cacheKey), RECURSIVE | SKIP_MISSING);
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to delete the outputs of cache key: " + cacheKey, ex);
+        }
+    }
+
+    private static boolean isGitMetadata(Path path) {
+        for (Path name : path) {
+            if (GIT_FOLDER.equals(name.toString())) return true;
+        }
+
+        return false;
+    }
+}
@@ -24,13 +24,14 @@ import io.buildpal.core.pipeline.Plugin;
 import io.buildpal.core.pipeline.event.Command;
 import io.buildpal.core.pipeline.event.CommandKey;
 import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
 import io.buildpal.core.process.ExternalProcess;
 import io.buildpal.core.util.FileUtils;
+import io.buildpal.core.util.WorkerPool;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.WorkerExecutor;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
@@ -79,7 +80,7 @@ public class ScriptVerticle extends Plugin {
     private static final JsonArray EMPTY_ARRAY = new JsonArray();
 
     private String instancesRootPath;
-    private WorkerExecutor workerExecutor;
+    private WorkerPool preScriptPool;
 
     @Override
     public Set<CommandKey> commandKeysToRegister() {
@@ -120,8 +121,7 @@ public class ScriptVerticle extends Plugin {
             copyResource(file, jsRoot);
         }
 
-        // TODO: Use config for pool size and max execution time.
-        workerExecutor = vertx.createSharedWorkerExecutor("SCRIPT-POOL", 5, 7200000000000L);
+        preScriptPool = WorkerPool.create(vertx, config(), "PRE-SCRIPT");
     }
 
     @Override
@@ -169,8 +169,8 @@ public class ScriptVerticle extends Plugin {
     private void runPreScript(Build build, Phase phase, Event phaseEndEvent) {
         String phasesPath = build.getWorkspace().getPhasesPath();
 
-        // Run on the worker pool since the time to run the script is not predictable.
-        workerExecutor.executeBlocking(bch -> {
+        // Run on the pre-script pool since the time to run the script is not predictable.
+        preScriptPool.<Void>executeBlocking(bch -> {
 
             try {
                 ExternalProcess process = new ExternalProcess()
@@ -191,7 +191,7 @@ public class ScriptVerticle extends Plugin {
                 bch.fail(ex);
             }
 
-        }, false, rfh -> {
+        }, rfh -> {
             if (rfh.failed()) {
                 phaseEndEvent.setStatusCode(500).setStatusMessage(rfh.cause().getMessage());
             }
@@ -201,11 +201,11 @@ public class ScriptVerticle extends Plugin {
     }
 
     private void fireSetupEndEvent(Event setupEndEvent) {
-        vertx.eventBus().send(setupEndEvent.getKey().getAddress(), setupEndEvent.json());
+        vertx.eventBus().send(setupEndEvent.getKey().getAddress(), setupEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void firePhaseEndEvent(Event phaseEndEvent) {
-        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json());
+        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void scanScript(Build build, Event setupEndEvent) {
@@ -288,14 +288,14 @@ public class ScriptVerticle extends Plugin {
         vertx.deployVerticle(fullScriptPath, dh -> {
 
             if (dh.succeeded()) {
-                build.setDeploymentID(dh.result());
+                String deploymentID = dh.result();
 
                 vertx.eventBus().<JsonObject>send(build.getID(), "dryRun", rh -> {
 
                     JsonObject msg = rh.result().body();
                     boolean dryRunSuccess = msg.getBoolean("dryRunSuccess");
 
-                    vertx.undeploy(build.getDeploymentID());
+                    vertx.undeploy(deploymentID);
 
                     if (dryRunSuccess) {
                         setupEndEvent.setStages(msg.getJsonArray("_stages", EMPTY_ARRAY));
@@ -3,21 +3,25 @@ package io.buildpal.workspace;
 import io.buildpal.core.domain.Build;
 import io.buildpal.core.domain.Phase;
 import io.buildpal.core.domain.Repository;
+import io.buildpal.core.domain.Secret;
 import io.buildpal.core.domain.Workspace;
 import io.buildpal.core.pipeline.Plugin;
 import io.buildpal.core.pipeline.event.Command;
 import io.buildpal.core.pipeline.event.CommandKey;
 import io.buildpal.core.pipeline.event.Event;
+import io.buildpal.core.pipeline.event.EventCodec;
 import io.buildpal.core.pipeline.event.EventKey;
 import io.buildpal.core.util.FileUtils;
+import io.buildpal.core.util.WorkerPool;
 import io.buildpal.workspace.vcs.FileSystemController;
 import io.buildpal.workspace.vcs.GitController;
+import io.buildpal.workspace.vcs.GitMirrors;
 import io.buildpal.workspace.vcs.P4Controller;
 import io.buildpal.workspace.vcs.SyncResult;
 import io.buildpal.workspace.vcs.VersionController;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.file.FileSystem;
@@ -28,7 +32,10 @@ import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.LocalMap;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -37,6 +44,7 @@ import java.util.Set;
 import static io.buildpal.auth.vault.VaultService.RETRIEVE_DATA_ADDRESS;
 import static io.buildpal.core.config.Constants.DATA_FOLDER_PATH;
 import static io.buildpal.core.config.Constants.DELETE_WORKSPACE_ADDRESS;
+import static io.buildpal.core.config.Constants.EMPTY_JSON;
 import static io.buildpal.core.domain.Entity.ID;
 import static io.buildpal.core.domain.Entity.NAME;
 import static io.buildpal.core.util.FileUtils.SLASH;
@@ -46,14 +54,26 @@ public class WorkspaceVerticle extends Plugin {
     private final static Logger logger = LoggerFactory.getLogger(WorkspaceVerticle.class);
 
     private static final String WORKSPACES = "workspaces";
+    private static final String MIRRORS = "mirrors";
+    private static final String VCS = "vcs";
     private static final String PERMS_755 = "rwxr-xr-x";
     private static final String PHASES_PATH = "/.buildpal/phases/";
 
     private FileSystem fs;
-    private WorkerExecutor workerExecutor;
+
+    // Separate bulkheads: a slow VCS remote should not hold up workspace cleanup and vice versa.
+    private WorkerPool vcsPool;
+    private WorkerPool cleanupPool;
+
     private LocalMap<String, JsonObject> activeWorkspaces;
 
     private String workspacesRootPath;
+    private GitMirrors gitMirrors;
+    private boolean incremental;
+    private int prefetchFanOut;
+
+    // Build ID -> lower case child repository name -> sync of that child.
+    private final Map<String, Map<String, ChildSync>> buildChildSyncs = new HashMap<>();
 
     @Override
     public Set<CommandKey> commandKeysToRegister() {
@@ -76,8 +96,8 @@ public class WorkspaceVerticle extends Plugin {
 
         activeWorkspaces = vertx.sharedData().getLocalMap(WORKSPACES);
 
-        // TODO: Use config for pool size and max execution time.
-        workerExecutor = vertx.createSharedWorkerExecutor("WORKSPACE-POOL", 5, 7200000000000L);
+        vcsPool = WorkerPool.create(vertx, config(), "VCS-SYNC");
+        cleanupPool = WorkerPool.create(vertx, config(), "FS-CLEANUP");
 
         preparePaths(config());
     }
@@ -92,7 +112,8 @@ public class WorkspaceVerticle extends Plugin {
     /**
      * Creates and sets the workspace for a build by executing the following steps:
      * 1) Obtain a lock on the workspace path
-     * 2) Create a new workspace - deletes existing folders and files, if any
+     * 2) Create a new workspace - deletes existing folders and files, if any, unless the workspace is updated
+     *    incrementally
      * 3) Download source code from the repository
      */
     @Override
@@ -120,7 +141,11 @@ public class WorkspaceVerticle extends Plugin {
                         FileUtils.chmod757(workspace.getUserPath());
                     }
 
-                    syncWorkspaceWithCreds(build, workspace, build.getRepository(), setupEndEvent);
+                    // The build is shared with other plugins; sync updates the repository's metadata.
+                    Repository repository = build.getRepository() != null ?
+                            new Repository(build.getRepository().json().copy()) : null;
+
+                    syncWorkspaceWithCreds(build, workspace, repository, setupEndEvent);
 
                 } catch (Exception ex) {
                     syncError(workspace, setupEndEvent, ex);
@@ -158,13 +183,37 @@ public class WorkspaceVerticle extends Plugin {
 
                 if (childRepo != null) {
                     Workspace childWorkspace = getChildRepoWorkspace(workspace, childRepo);
+                    Map<String, ChildSync> childSyncs = buildChildSyncs.computeIfAbsent(build.getID(),
+                            k -> new HashMap<>());
+
+                    ChildSync childSync = childSyncs.get(childRepo.getName().toLowerCase());
 
-                    if (!fs.existsBlocking(childWorkspace.getPath())) {
+                    if (childSync == null) {
+                        if (!fs.existsBlocking(childWorkspace.getPath())) {
+                            // Not prefetched - sync it now.
+                            childSync = new ChildSync();
+                            childSyncs.put(childRepo.getName().toLowerCase(), childSync);
+
+                            syncChild(build, repository, childWorkspace, childRepo, childSync::complete);
+
+                        } else {
+                            logger.info("Child repo already synced: " + childRepo.getName());
+                        }
+                    }
+
+                    if (childSync != null) {
                         syncInProgress = true;
-                        syncWorkspaceForPhaseWithCreds(build, repository, childWorkspace, childRepo, phaseEndEvent);
 
-                    } else {
-                        logger.info("Child repo already synced: " + childRepo.getName());
+                        childSync.onComplete(rh -> {
+                            if (rh.failed()) {
+                                syncError(childWorkspace, phaseEndEvent, rh.cause());
+                            }
+
+                            // Pass the updated repository (updated metadata).
+                            phaseEndEvent.setChildRepository(rh.succeeded() ? rh.result() : childRepo);
+
+                            firePhaseEndEvent(phaseEndEvent);
+                        });
                     }
                 }
 
@@ -188,7 +237,17 @@ public class WorkspaceVerticle extends Plugin {
                     .setKey(EventKey.TEAR_DOWN_END)
                     .setBuildID(build.getID());
 
-            revertWithCreds(build, tearDownEndEvent);
+            // Copy since the metadata of prefetched children is added for the revert.
+            Repository repository = build.getRepository() != null ?
+                    new Repository(build.getRepository().json().copy()) : null;
+
+            awaitChildSyncs(build.getID(), synced -> {
+                if (repository != null) {
+                    synced.forEach(repository::updateChildRepository);
+                }
+
+                revertWithCreds(build, repository, tearDownEndEvent);
+            });
         };
     }
 
@@ -208,15 +267,15 @@ public class WorkspaceVerticle extends Plugin {
     }
 
     private void fireSetupEndEvent(Event setupEndEvent) {
-        vertx.eventBus().send(setupEndEvent.getKey().getAddress(), setupEndEvent.json());
+        vertx.eventBus().send(setupEndEvent.getKey().getAddress(), setupEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void firePhaseEndEvent(Event phaseEndEvent) {
-        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json());
+        vertx.eventBus().send(EventKey.PHASE_END.getAddress(), phaseEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void fireTearDownEndEvent(Event tearDownEndEvent) {
-        vertx.eventBus().send(tearDownEndEvent.getKey().getAddress(), tearDownEndEvent.json());
+        vertx.eventBus().send(tearDownEndEvent.getKey().getAddress(), tearDownEndEvent.json(), EventCodec.OPTIONS);
     }
 
     private void preparePaths(JsonObject config) {
@@ -231,12 +290,21 @@ public class WorkspaceVerticle extends Plugin {
         if (!workspacesRoot.exists()) {
             fs.mkdirsBlocking(workspacesRootPath, PERMS_755);
         }
+
+        JsonObject vcsConfig = config.getJsonObject(VCS, EMPTY_JSON);
+
+        incremental = vcsConfig.getBoolean("incremental", true);
+        prefetchFanOut = vcsConfig.getInteger("prefetchFanOut", 4);
+
+        if (vcsConfig.getBoolean("gitMirrors", true)) {
+            gitMirrors = new GitMirrors(new File(slashify(dataFolderPath) + MIRRORS));
+        }
     }
 
     private Workspace makeWorkspace(Build build) {
         String userID = build.getCreatedBy();
         String userPath = workspacesRootPath + userID;
-        String workspaceID = userID + "_" + build.getPipelineID();
+        String workspaceID = Workspace.workspaceID(userID, build.getPipelineID());
         String workspacePath = userPath + SLASH + build.getPipelineID();
         String phasesPath = workspacePath + PHASES_PATH;
 
@@ -263,7 +331,16 @@ public class WorkspaceVerticle extends Plugin {
         return data != null && buildID.equals(data.getString(ID));
     }
 
-    private void prepareWorkspace(Workspace workspace) throws Exception {
+    private void prepareWorkspace(Workspace workspace, Repository repository) throws Exception {
+        if (incremental && isIncremental(repository) && fs.existsBlocking(workspace.getPath())) {
+            // Keep the checkout for the version controller to update. Only drop the previous build's phases.
+            if (fs.existsBlocking(workspace.getPhasesPath())) {
+                fs.deleteRecursiveBlocking(workspace.getPhasesPath(), true);
+            }
+
+            return;
+        }
+
         // Delete existing workspace.
         if (fs.existsBlocking(workspace.getPath())) {
             fs.deleteRecursiveBlocking(workspace.getPath(), true);
@@ -274,6 +351,19 @@ public class WorkspaceVerticle extends Plugin {
         FileUtils.chmod757(workspace.getPath());
     }
 
+    private static boolean isMulti(Repository repository) {
+        return repository != null &&
+                (repository.getType() == Repository.Type.MULTI_GIT || repository.getType() == Repository.Type.MULTI_P4);
+    }
+
+    /**
+     * Multi repositories sync their children into sub folders, so they always start afresh.
+     */
+    private static boolean isIncremental(Repository repository) {
+        return repository != null &&
+                (repository.getType() == Repository.Type.GIT || repository.getType() == Repository.Type.P4);
+    }
+
     private void syncWorkspaceWithCreds(Build build, Workspace workspace, Repository repository, Event setupEndEvent) {
         if (repository != null && repository.hasSecret()) {
 
@@ -284,8 +374,7 @@ public class WorkspaceVerticle extends Plugin {
                     JsonObject secretJson = rh.result().body();
 
                     if (secretJson != null) {
-                        build.setRepositorySecret(secretJson);
-                        syncWorkspace(build, workspace, repository, setupEndEvent);
+                        syncWorkspace(build, workspace, repository, new Secret(secretJson), setupEndEvent);
 
                     } else {
                         syncError(workspace, setupEndEvent, new Exception("Unable to retrieve data from vault."));
@@ -299,29 +388,45 @@ public class WorkspaceVerticle extends Plugin {
             });
 
         } else {
-            syncWorkspace(build, workspace, repository, setupEndEvent);
+            syncWorkspace(build, workspace, repository, null, setupEndEvent);
         }
     }
 
-    private void syncWorkspace(Build build, Workspace workspace, Repository repository, Event setupEndEvent) {
-        // Run on the worker pool - might take a while to sync from VCS remote server.
-        workerExecutor.executeBlocking(bch -> {
-            try {
-                prepareWorkspace(workspace);
-
-                VersionController versionController = repoVersionController(workspace, repository);
-                versionController.sync(build.data(), build.getRepositorySecret());
+    private void syncWorkspace(Build build, Workspace workspace, Repository repository, Secret secret,
+                               Event setupEndEvent) {
+        Future<Void> prepareFuture = Future.future();
+        Future<Void> syncFuture = Future.future();
 
+        // Clear the old workspace on the cleanup pool - deleting a large checkout takes a while as well.
+        cleanupPool.executeBlocking(bch -> {
+            try {
+                prepareWorkspace(workspace, repository);
                 bch.complete();
 
             } catch (Exception ex) {
                 bch.fail(ex);
-
-            } finally {
-                build.clearRepositorySecret();
             }
 
-        }, false, rh -> {
+        }, prepareFuture.completer());
+
+        prepareFuture.compose(p -> {
+            // Run on the VCS pool - might take a while to sync from VCS remote server.
+            vcsPool.<Void>executeBlocking(bch -> {
+                try {
+                    VersionController versionController = repoVersionController(workspace, repository);
+                    versionController.sync(build.data(), secret);
+
+                    bch.complete();
+
+                } catch (Exception ex) {
+                    bch.fail(ex);
+                }
+
+            }, syncFuture.completer());
+
+        }, syncFuture);
+
+        syncFuture.setHandler(rh -> {
             if (rh.succeeded()) {
                 // Create phases folder.
                 fs.mkdirsBlocking(workspace.getPhasesPath(), PERMS_755);
@@ -329,6 +434,10 @@ public class WorkspaceVerticle extends Plugin {
                 // Pass the updated repository (updated metadata).
                 setupEndEvent.setRepository(repository);
 
+                if (prefetchFanOut > 0 && isMulti(repository)) {
+                    prefetchChildren(build, repository, workspace);
+                }
+
             } else {
                 syncError(workspace, setupEndEvent, rh.cause());
             }
@@ -337,69 +446,124 @@ public class WorkspaceVerticle extends Plugin {
         });
     }
 
-    private void syncWorkspaceForPhaseWithCreds(Build build, Repository repository, Workspace childWorkspace,
-                                                Repository childRepo, Event phaseEndEvent) {
-
-        if (repository != null && repository.hasSecret()) {
-
-            JsonObject data = new JsonObject().put(NAME, repository.getSecret().getName());
+    /**
+     * Syncs every child of a multi repository, except the one synced at setup, at most prefetchFanOut at a time.
+     * Phases wait on their child's sync instead of starting it, so the syncs overlap with each other and with
+     * the phases that are already running.
+     */
+    private void prefetchChildren(Build build, Repository repository, Workspace workspace) {
+        Map<String, ChildSync> childSyncs = new HashMap<>();
+        Deque<Repository> pending = new ArrayDeque<>();
 
-            vertx.eventBus().<JsonObject>send(RETRIEVE_DATA_ADDRESS, data, rh -> {
-                if (rh.succeeded()) {
-                    JsonObject secretJson = rh.result().body();
+        JsonArray children = repository.getChildren();
 
-                    if (secretJson != null) {
-                        build.setRepositorySecret(secretJson);
-                        syncWorkspaceForPhase(build, childWorkspace, repository, childRepo, phaseEndEvent);
+        for (int c=0; c<children.size(); c++) {
+            Repository childRepo = childRepository(repository, children.getJsonObject(c));
 
-                    } else {
-                        syncError(childWorkspace, phaseEndEvent, new Exception("Unable to retrieve data from vault."));
-                        firePhaseEndEvent(phaseEndEvent);
-                    }
+            if (!childRepo.hasPipeline()) {
+                childSyncs.put(childRepo.getName().toLowerCase(), new ChildSync());
+                pending.add(childRepo);
+            }
+        }
 
-                } else {
-                    syncError(childWorkspace, phaseEndEvent, rh.cause());
-                    firePhaseEndEvent(phaseEndEvent);
-                }
-            });
+        buildChildSyncs.put(build.getID(), childSyncs);
 
-        } else {
-            syncWorkspaceForPhase(build, childWorkspace, repository, childRepo, phaseEndEvent);
+        for (int f=0; f<prefetchFanOut; f++) {
+            prefetchNextChild(build, repository, workspace, pending, childSyncs);
         }
     }
 
-    private void syncWorkspaceForPhase(Build build, Workspace childWorkspace,
-                                       Repository repository, Repository childRepo, Event phaseEndEvent) {
-        // Run on the worker pool - might take a while to sync from VCS remote server.
-        workerExecutor.executeBlocking(bch -> {
-            try {
-                VersionController versionController = repoVersionController(childWorkspace, childRepo);
-                versionController.sync(build.data(), build.getRepositorySecret());
+    private void prefetchNextChild(Build build, Repository repository, Workspace workspace,
+                                   Deque<Repository> pending, Map<String, ChildSync> childSyncs) {
 
-                bch.complete();
+        Repository childRepo = pending.poll();
 
-            } catch (Exception ex) {
-                bch.fail(ex);
+        if (childRepo == null) return;
+
+        syncChild(build, repository, getChildRepoWorkspace(workspace, childRepo), childRepo, rh -> {
+            childSyncs.get(childRepo.getName().toLowerCase()).complete(rh);
+
+            prefetchNextChild(build, repository, workspace, pending, childSyncs);
+        });
+    }
+
+    private void syncChild(Build build, Repository repository, Workspace childWorkspace, Repository childRepo,
+                           Handler<AsyncResult<Repository>> handler) {
 
-            } finally {
-                build.clearRepositorySecret();
+        retrieveSecret(repository, sh -> {
+            if (sh.failed()) {
+                handler.handle(Future.failedFuture(sh.cause()));
+                return;
             }
 
-        }, false, rh -> {
+            // Run on the VCS pool - might take a while to sync from VCS remote server.
+            vcsPool.<Void>executeBlocking(bch -> {
+                try {
+                    VersionController versionController = repoVersionController(childWorkspace, childRepo);
+                    versionController.sync(build.data(), sh.result());
+
+                    bch.complete();
+
+                } catch (Exception ex) {
+                    bch.fail(ex);
+                }
+
+            }, rh -> handler.handle(rh.succeeded() ?
+                    Future.succeededFuture(childRepo) : Future.failedFuture(rh.cause())));
+        });
+    }
+
+    /**
+     * Completes with the repository's secret, or with null if it has none.
+     */
+    private void retrieveSecret(Repository repository, Handler<AsyncResult<Secret>> handler) {
+        if (repository == null || !repository.hasSecret()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        JsonObject data = new JsonObject().put(NAME, repository.getSecret().getName());
+
+        vertx.eventBus().<JsonObject>send(RETRIEVE_DATA_ADDRESS, data, rh -> {
             if (rh.failed()) {
-                syncError(childWorkspace, phaseEndEvent, rh.cause());
-            }
+                handler.handle(Future.failedFuture(rh.cause()));
 
-            // Pass the updated repository (updated metadata).
-            phaseEndEvent.setChildRepository(childRepo);
+            } else if (rh.result().body() == null) {
+                handler.handle(Future.failedFuture(new Exception("Unable to retrieve data from vault.")));
 
-            firePhaseEndEvent(phaseEndEvent);
+            } else {
+                handler.handle(Future.succeededFuture(new Secret(rh.result().body())));
+            }
         });
     }
 
-    private void revertWithCreds(Build build, Event tearDownEvent) {
+    /**
+     * Calls the handler once all the child syncs of the build are done, with the synced children.
+     */
+    private void awaitChildSyncs(String buildID, Handler<List<Repository>> handler) {
+        Map<String, ChildSync> childSyncs = buildChildSyncs.remove(buildID);
+        List<Repository> synced = new ArrayList<>();
+
+        if (childSyncs == null || childSyncs.isEmpty()) {
+            handler.handle(synced);
+            return;
+        }
+
+        int[] remaining = { childSyncs.size() };
+
+        childSyncs.values().forEach(childSync -> childSync.onComplete(rh -> {
+            if (rh.succeeded()) {
+                synced.add(rh.result());
+            }
+
+            if (--remaining[0] == 0) {
+                handler.handle(synced);
+            }
+        }));
+    }
+
+    private void revertWithCreds(Build build, Repository repository, Event tearDownEvent) {
         Workspace workspace = build.getWorkspace();
-        Repository repository = build.getRepository();
 
         if (repository != null && repository.hasSecret()) {
 
@@ -410,8 +574,7 @@ public class WorkspaceVerticle extends Plugin {
                     JsonObject secretJson = rh.result().body();
 
                     if (secretJson != null) {
-                        build.setRepositorySecret(secretJson);
-                        revert(build, workspace, repository, tearDownEvent);
+                        revert(build, workspace, repository, new Secret(secretJson), tearDownEvent);
 
                     } else {
                         revertError(workspace, tearDownEvent, new Exception("Unable to retrieve data from vault."));
@@ -425,29 +588,28 @@ public class WorkspaceVerticle extends Plugin {
             });
 
         } else {
-            revert(build, workspace, repository, tearDownEvent);
+            revert(build, workspace, repository, null, tearDownEvent);
         }
     }
 
-    private void revert(Build build, Workspace workspace, Repository repository, Event tearDownEndEvent) {
-        workerExecutor.executeBlocking(bch -> {
+    private void revert(Build build, Workspace workspace, Repository repository, Secret secret,
+                        Event tearDownEndEvent) {
+        vcsPool.<Void>executeBlocking(bch -> {
 
             List<VersionController>  versionControllers = repoVersionControllersToRevert(workspace, repository);
 
             for (VersionController versionController : versionControllers) {
                 try {
-                    versionController.revert(build.getRepositorySecret());
+                    versionController.revert(secret);
 
                 } catch (Exception ex) {
                     logger.error("Unable to revert: " + versionController.getRepository().json(), ex);
                 }
             }
 
-            build.clearRepositorySecret();
-
             bch.complete();
 
-        }, false, rh -> {
+        }, rh -> {
 
             String workspaceID = getWorkspaceID(build, workspace);
 
@@ -472,13 +634,16 @@ public class WorkspaceVerticle extends Plugin {
     }
 
     private void deleteUserWorkspace(String userPath) {
-        vertx.fileSystem().exists(userPath, eh -> {
-            if (eh.result()) {
-                vertx.fileSystem().deleteRecursive(userPath, true, dh-> {
-                    if (dh.failed()) {
-                        logger.error("Unable to delete user workspace: " + userPath, dh.cause());
-                    }
-                });
+        cleanupPool.<Void>executeBlocking(bch -> {
+            if (fs.existsBlocking(userPath)) {
+                fs.deleteRecursiveBlocking(userPath, true);
+            }
+
+            bch.complete();
+
+        }, dh -> {
+            if (dh.failed()) {
+                logger.error("Unable to delete user workspace: " + userPath, dh.cause());
             }
         });
     }
@@ -511,11 +676,11 @@ public class WorkspaceVerticle extends Plugin {
                 break;
 
             case GIT:
-                versionController = new GitController(repository, workspace);
+                versionController = new GitController(repository, workspace, gitMirrors, incremental);
                 break;
 
             case P4:
-                versionController = new P4Controller(repository, workspace);
+                versionController = new P4Controller(repository, workspace, incremental);
                 break;
 
             case MULTI_GIT:
@@ -548,10 +713,11 @@ public class WorkspaceVerticle extends Plugin {
                 repository.setHasPipeline(true);
 
                 if (childRepo.getType() == Repository.Type.GIT) {
-                    return new GitController(childRepo, getChildRepoWorkspace(workspace, childRepo));
+                    return new GitController(childRepo, getChildRepoWorkspace(workspace, childRepo), gitMirrors,
+                            incremental);
 
                 } else {
-                    return new P4Controller(childRepo, getChildRepoWorkspace(workspace, childRepo));
+                    return new P4Controller(childRepo, getChildRepoWorkspace(workspace, childRepo), incremental);
                 }
             }
         }
@@ -566,7 +732,7 @@ public class WorkspaceVerticle extends Plugin {
             // Only perforce syncs needs corresponding reverts.
             switch (repository.getType()) {
                 case P4:
-                    versionControllers.add(new P4Controller(repository, workspace));
+                    versionControllers.add(new P4Controller(repository, workspace, incremental));
                     break;
 
                 case MULTI_P4:
@@ -576,7 +742,8 @@ public class WorkspaceVerticle extends Plugin {
                         Repository childRepo = new Repository(children.getJsonObject(c));
 
                         if (childRepo.getType() == Repository.Type.P4) {
-                            versionControllers.add(new P4Controller(childRepo, getChildRepoWorkspace(workspace, childRepo)));
+                            versionControllers.add(new P4Controller(childRepo,
+                                    getChildRepoWorkspace(workspace, childRepo), incremental));
                         }
                     }
 
@@ -597,15 +764,8 @@ public class WorkspaceVerticle extends Plugin {
             JsonArray children = repository.getChildren();
 
             for (int c = 0; c < children.size(); c++) {
-                Repository childRepo = new Repository(children.getJsonObject(c));
-
-                if (phase.getRepo().equalsIgnoreCase(childRepo.getName())) {
-
-                    if (repository.hasSecret()) {
-                        childRepo.setSecret(repository.getSecret().json());
-                    }
-
-                    return childRepo;
+                if (phase.getRepo().equalsIgnoreCase(children.getJsonObject(c).getString(NAME))) {
+                    return childRepository(repository, children.getJsonObject(c));
                 }
             }
         }
@@ -613,6 +773,17 @@ public class WorkspaceVerticle extends Plugin {
         return null;
     }
 
+    private Repository childRepository(Repository repository, JsonObject child) {
+        // Copy since the child repo is updated while the build is shared with other plugins.
+        Repository childRepo = new Repository(child.copy());
+
+        if (repository.hasSecret()) {
+            childRepo.setSecret(repository.getSecret().json());
+        }
+
+        return childRepo;
+    }
+
     private Workspace getChildRepoWorkspace(Workspace workspace, Repository childRepo) {
         return workspace.cloneMe()
                 .setPath(slashify(workspace.getPath()) + childRepo.getName());
@@ -631,4 +802,28 @@ public class WorkspaceVerticle extends Plugin {
 
         event.setStatusCode(500).setStatusMessage(error);
     }
+
+    /**
+     * Sync of a child repository that any number of phases may wait on.
+     */
+    private static class ChildSync {
+        private AsyncResult<Repository> result;
+        private final List<Handler<AsyncResult<Repository>>> waiters = new ArrayList<>();
+
+        private void complete(AsyncResult<Repository> result) {
+            this.result = result;
+
+            waiters.forEach(w -> w.handle(result));
+            waiters.clear();
+        }
+
+        private void onComplete(Handler<AsyncResult<Repository>> waiter) {
+            if (result != null) {
+                waiter.handle(result);
+
+            } else {
+                waiters.add(waiter);
+            }
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.workspace.vcs;
+
+import io.buildpal.core.domain.Repository;
+import io.buildpal.core.process.ExternalProcess;
+import io.vertx.core.json.JsonArray;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shallow, partial and sparse clones through the git command line, as JGit supports none of them.
+ * Sparse paths use cone mode, which needs git 2.25 or later.
+ *
+ * The URI, branch, remote and sparse paths come from users and build data. Values that start with a dash are
+ * rejected and positionals follow --end-of-options, so none of them can be read as an option such as --upload-pack.
+ */
+class GitCli {
+    private static final String GIT = "git";
+    private static final String END_OF_OPTIONS = "--end-of-options";
+
+    private final Repository repository;
+    private final File directory;
+
+    GitCli(Repository repository, File directory) {
+        this.repository = repository;
+        this.directory = directory;
+    }
+
+    void clone(String branch, String remote) throws Exception {
+        checkArg("branch", branch);
+        checkArg("remote", remote);
+        checkArg("uri", repository.getUri());
+
+        List<String> args = new ArrayList<>();
+        args.add("clone");
+
+        if (hasSparsePaths()) {
+            // Check out only after the sparse paths are set.
+            args.add("--no-checkout");
+        }
+
+        addFetchOptions(args);
+
+        if (StringUtils.isNotBlank(branch)) {
+            args.add("--branch");
+            args.add(branch);
+        }
+
+        args.add("--origin");
+        args.add(remote);
+        args.add(END_OF_OPTIONS);
+        args.add(repository.getUri());
+        args.add(directory.getAbsolutePath());
+
+        run(directory.getParentFile(), args);
+
+        if (hasSparsePaths()) {
+            setSparsePaths();
+            run(directory, List.of("reset", "--hard"));
+        }
+    }
+
+    /**
+     * Fetches only the branch (or tag) with the same depth and filter, then resets and cleans the workspace.
+     */
+    void update(String branch, String remote) throws Exception {
+        checkArg("branch", branch);
+        checkArg("remote", remote);
+
+        if (hasSparsePaths()) {
+            // The paths may have changed since the last build.
+            setSparsePaths();
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add("fetch");
+
+        addFetchOptions(args);
+        args.add(END_OF_OPTIONS);
+        args.add(remote);
+
+        if (StringUtils.isNotBlank(branch)) {
+            args.add(branch);
+        }
+
+        run(directory, args);
+
+        run(directory, List.of("reset", "--hard", StringUtils.isNotBlank(branch) ? "FETCH_HEAD" : remote + "/HEAD"));
+        run(directory, List.of("clean", "-ffdx"));
+    }
+
+    private void addFetchOptions(List<String> args) {
+        if (repository.getCloneDepth() > 0) {
+            args.add("--depth");
+            args.add(String.valueOf(repository.getCloneDepth()));
+        }
+
+        if (StringUtils.isNotBlank(repository.getFilter())) {
+            args.add("--filter=" + repository.getFilter());
+        }
+    }
+
+    private boolean hasSparsePaths() {
+        JsonArray sparsePaths = repository.getSparsePaths();
+        return sparsePaths != null && !sparsePaths.isEmpty();
+    }
+
+    private void setSparsePaths() throws Exception {
+        run(directory, List.of("sparse-checkout", "init", "--cone"));
+
+        List<String> args = new ArrayList<>();
+        args.add("sparse-checkout");
+        args.add("set");
+
+        JsonArray sparsePaths = repository.getSparsePaths();
+
+        for (int s=0; s<sparsePaths.size(); s++) {
+            checkArg("sparse path", sparsePaths.getString(s));
+            args.add(sparsePaths.getString(s));
+        }
+
+        run(directory, args);
+    }
+
+    private static void checkArg(String name, String value) {
+        if (value != null && value.trim().startsWith("-")) {
+            throw new IllegalArgumentException(String.format("Git %s cannot start with '-': %s", name, value));
+        }
+    }
+
+    private static void run(File workingDirectory, List<String> args) throws Exception {
+        ExternalProcess process = new ExternalProcess()
+                .withCommand(GIT)
+                .inDirectory(workingDirectory.getAbsolutePath());
+
+        args.forEach(process::withArg);
+
+        int exitCode = process.run();
+
+        if (exitCode != 0) {
+            throw new Exception(String.format("git %s failed (%d)", args.get(0), exitCode));
+        }
+    }
+}
@@ -20,16 +20,39 @@ import io.buildpal.core.domain.Repository;
 import io.buildpal.core.domain.Secret;
 import io.buildpal.core.domain.Workspace;
 import io.buildpal.core.util.DataUtils;
+import io.buildpal.core.util.FileUtils;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.File;
+import java.util.Map;
 
 public class GitController extends BaseVersionController {
     private final static Logger logger = LoggerFactory.getLogger(GitController.class);
 
+    private final GitMirrors mirrors;
+    private final boolean incremental;
+
     public GitController(Repository repository, Workspace workspace) {
+        this(repository, workspace, null, false);
+    }
+
+    /**
+     * @param mirrors the node's mirror cache, or null to always clone from the remote.
+     * @param incremental true to update an existing checkout in the workspace instead of cloning again.
+     */
+    public GitController(Repository repository, Workspace workspace, GitMirrors mirrors, boolean incremental) {
         super(repository, workspace);
+        this.mirrors = mirrors;
+        this.incremental = incremental;
     }
 
     @Override
@@ -39,6 +62,47 @@ public class GitController extends BaseVersionController {
 
         // TODO: Add SSH and Oauth support.
 
+        if (incremental && new File(workspacePath(), Constants.DOT_GIT).isDirectory()) {
+            try {
+                if (repository.isPartialClone()) {
+                    new GitCli(repository, workspacePath()).update(branch, remote());
+
+                } else {
+                    update(branch);
+                }
+
+                logSync(data);
+                return;
+
+            } catch (Exception ex) {
+                logger.warn("Unable to update git workspace, syncing it again: " + workspace.getPath(), ex);
+                resetWorkspace();
+            }
+        }
+
+        if (repository.isPartialClone()) {
+            try {
+                new GitCli(repository, workspacePath()).clone(branch, remote());
+                logSync(data);
+                return;
+
+            } catch (Exception ex) {
+                logger.warn("Unable to clone with the git command line, cloning in full: " + repository.getUri(), ex);
+                resetWorkspace();
+            }
+
+        } else if (mirrors != null) {
+            try {
+                syncFromMirror(branch);
+                logSync(data);
+                return;
+
+            } catch (Exception ex) {
+                logger.warn("Unable to sync from git mirror, cloning from remote: " + repository.getUri(), ex);
+                resetWorkspace();
+            }
+        }
+
         Git.cloneRepository()
                 .setURI(repository.getUri())
                 .setBranch(branch)
@@ -47,6 +111,150 @@ public class GitController extends BaseVersionController {
                 .call()
                 .close();
 
+        logSync(data);
+    }
+
+    /**
+     * Brings the mirror up to date, then fetches from it into the workspace. The workspace uses the mirror's
+     * objects through alternates, so the fetch finds everything locally and nothing is copied.
+     */
+    private void syncFromMirror(String branch) throws Exception {
+        File mirror = mirrors.update(repository.getUri());
+        String remote = remote();
+
+        try (Git git = Git.init().setDirectory(workspacePath()).call()) {
+            GitMirrors.addAlternate(git.getRepository().getDirectory(), mirror);
+
+            RefSpec remoteHeads = new RefSpec("+refs/heads/*:refs/remotes/" + remote + "/*");
+
+            // Keep the real remote in the config so the workspace looks like a regular clone.
+            StoredConfig config = git.getRepository().getConfig();
+            config.setString("remote", remote, "url", repository.getUri());
+            config.setString("remote", remote, "fetch", remoteHeads.toString());
+            config.save();
+
+            git.fetch()
+                    .setRemote(mirror.toURI().toString())
+                    .setRefSpecs(remoteHeads, GitMirrors.TAGS)
+                    .call();
+
+            checkout(git, remote, branch, mirror);
+        }
+    }
+
+    /**
+     * Fetches into the existing checkout, then hard resets it to the branch (or tag or commit) and removes
+     * everything untracked, including ignored files, so the result matches a fresh clone.
+     */
+    private void update(String branch) throws Exception {
+        String remote = remote();
+
+        try (Git git = Git.open(workspacePath())) {
+            File mirror = null;
+            String source = repository.getUri();
+
+            if (mirrors != null) {
+                mirror = mirrors.update(repository.getUri());
+                source = mirror.toURI().toString();
+            }
+
+            git.fetch()
+                    .setRemote(source)
+                    .setRefSpecs(new RefSpec("+refs/heads/*:refs/remotes/" + remote + "/*"), GitMirrors.TAGS)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+
+            // Discard what the previous build left behind before switching.
+            git.reset().setMode(ResetCommand.ResetType.HARD).call();
+            git.clean().setCleanDirectories(true).setIgnore(false).call();
+
+            checkout(git, remote, branch, mirror);
+        }
+    }
+
+    private void checkout(Git git, String remote, String branch, File mirror) throws Exception {
+        if (StringUtils.isBlank(branch)) {
+            branch = defaultBranch(git, mirror);
+        }
+
+        String remoteBranch = remote + "/" + branch;
+
+        if (git.getRepository().exactRef(Constants.R_REMOTES + remoteBranch) != null) {
+            boolean exists = git.getRepository().exactRef(Constants.R_HEADS + branch) != null;
+
+            git.checkout()
+                    .setCreateBranch(!exists)
+                    .setName(branch)
+                    .setStartPoint(remoteBranch)
+                    .call();
+
+            // An existing local branch may be behind.
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(remoteBranch).call();
+
+        } else {
+            // A tag or a commit: detached head.
+            git.checkout().setName(branch).call();
+        }
+    }
+
+    /**
+     * Same as a clone: the branch the remote's HEAD points to. The workspace's own HEAD won't do, as it is
+     * detached after a build of a tag or a commit.
+     */
+    private String defaultBranch(Git git, File mirror) throws Exception {
+        if (mirror != null) {
+            try (Git mirrorGit = Git.open(mirror)) {
+                return mirrorGit.getRepository().getBranch();
+            }
+        }
+
+        String remoteRefs = Constants.R_REMOTES + remote() + "/";
+        Ref remoteHead = git.getRepository().exactRef(remoteRefs + Constants.HEAD);
+
+        if (remoteHead != null && remoteHead.isSymbolic() && remoteHead.getTarget().getName().startsWith(remoteRefs)) {
+            return remoteHead.getTarget().getName().substring(remoteRefs.length());
+        }
+
+        Map<String, Ref> refs = git.lsRemote().setRemote(repository.getUri()).callAsMap();
+        Ref head = refs.get(Constants.HEAD);
+
+        if (head == null) {
+            throw new IllegalStateException("Remote has no HEAD: " + repository.getUri());
+        }
+
+        if (head.isSymbolic()) {
+            return head.getTarget().getName().substring(Constants.R_HEADS.length());
+        }
+
+        // The remote didn't say where HEAD points: pick a branch at the same commit, master first.
+        Ref master = refs.get(Constants.R_HEADS + Constants.MASTER);
+
+        if (master != null && head.getObjectId().equals(master.getObjectId())) {
+            return Constants.MASTER;
+        }
+
+        for (Ref ref : refs.values()) {
+            if (ref.getName().startsWith(Constants.R_HEADS) && head.getObjectId().equals(ref.getObjectId())) {
+                return ref.getName().substring(Constants.R_HEADS.length());
+            }
+        }
+
+        throw new IllegalStateException("Unable to find the default branch of: " + repository.getUri());
+    }
+
+    private String remote() {
+        return StringUtils.defaultIfBlank(repository.getRemote(), Constants.DEFAULT_REMOTE_NAME);
+    }
+
+    private void resetWorkspace() throws Exception {
+        org.eclipse.jgit.util.FileUtils.delete(workspacePath(),
+                org.eclipse.jgit.util.FileUtils.RECURSIVE | org.eclipse.jgit.util.FileUtils.SKIP_MISSING);
+
+        workspacePath().mkdirs();
+        FileUtils.chmod757(workspace.getPath());
+    }
+
+    private void logSync(JsonObject data) {
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Sync repo %s to %s completed with data: %s ",
                     getRepository().getName(), workspace.getPath(), data.encode()));
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.workspace.vcs;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.buildpal.core.util.Utils.sha256;
+
+/**
+ * Node-local cache of bare git mirrors, one per repository URI. A mirror is cloned once and then fetched
+ * incrementally, so the remote only sends what changed since the last build on this node.
+ *
+ * Workspaces borrow the mirror's objects through git alternates instead of copying them. Mirrors are never
+ * garbage collected by buildpal; pruning one while a workspace still refers to it breaks that workspace.
+ */
+public class GitMirrors {
+    private final static Logger logger = LoggerFactory.getLogger(GitMirrors.class);
+
+    static final RefSpec HEADS = new RefSpec("+refs/heads/*:refs/heads/*");
+    static final RefSpec TAGS = new RefSpec("+refs/tags/*:refs/tags/*");
+
+    private final File root;
+    private final ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    public GitMirrors(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Clones or fetches the mirror of the given repository.
+     *
+     * @return the bare mirror directory, up to date with the remote.
+     */
+    public File update(String uri) throws Exception {
+        File mirror = new File(root, sha256(uri) + ".git");
+
+        // One fetch per mirror at a time. Builds of other repositories go ahead.
+        ReentrantLock lock = locks.computeIfAbsent(mirror.getName(), k -> new ReentrantLock());
+        lock.lock();
+
+        try {
+            if (new File(mirror, "objects").isDirectory()) {
+                try (Git git = Git.open(mirror)) {
+                    git.fetch()
+                            .setRemote(uri)
+                            .setRefSpecs(HEADS, TAGS)
+                            .setRemoveDeletedRefs(true)
+                            .call();
+                }
+
+            } else {
+                Files.createDirectories(root.toPath());
+
+                Git.cloneRepository()
+                        .setURI(uri)
+                        .setBare(true)
+                        .setCloneAllBranches(true)
+                        .setDirectory(mirror)
+                        .call()
+                        .close();
+
+                logger.info("Git mirror created for: " + uri);
+            }
+
+        } finally {
+            lock.unlock();
+        }
+
+        return mirror;
+    }
+
+    /**
+     * Points the repository at the mirror's object store, so objects already in the mirror are never copied.
+     */
+    public static void addAlternate(File gitDir, File mirror) throws Exception {
+        File info = new File(gitDir, "objects/info");
+        Files.createDirectories(info.toPath());
+
+        Files.write(new File(info, "alternates").toPath(),
+                (new File(mirror, "objects").getAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
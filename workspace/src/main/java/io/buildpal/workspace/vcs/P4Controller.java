@@ -22,6 +22,7 @@ import com.perforce.p4java.core.file.FileSpecBuilder;
 import com.perforce.p4java.core.file.IFileSpec;
 import com.perforce.p4java.impl.mapbased.client.Client;
 import com.perforce.p4java.option.UsageOptions;
+import com.perforce.p4java.option.client.ReconcileFilesOptions;
 import com.perforce.p4java.option.client.RevertFilesOptions;
 import com.perforce.p4java.option.client.SyncOptions;
 import com.perforce.p4java.option.server.TrustOptions;
@@ -38,14 +39,28 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 public class P4Controller extends BaseVersionController {
     private final static Logger logger = LoggerFactory.getLogger(P4Controller.class);
 
+    private static final String CLIENT_PREFIX = "buildpal-";
+
+    private final boolean persistentClient;
+
     public P4Controller(Repository repository, Workspace workspace) {
+        this(repository, workspace, false);
+    }
+
+    /**
+     * @param persistentClient true to keep one client per node and workspace across builds, so that each sync only
+     *                         transfers the files that changed since the previous build.
+     */
+    public P4Controller(Repository repository, Workspace workspace, boolean persistentClient) {
         super(repository, workspace);
+        this.persistentClient = persistentClient;
     }
 
     @Override
@@ -61,7 +76,7 @@ public class P4Controller extends BaseVersionController {
                 server.login(secret.getPwd());
             }
 
-            clientName = Utils.newID();
+            clientName = persistentClient ? persistentClientName() : Utils.newID();
             sync(server, clientName, data);
 
 
@@ -99,10 +114,15 @@ public class P4Controller extends BaseVersionController {
             // Revert all changes.
             client.revertFiles(fileSpecs, options);
 
-            // Delete the client.
-            server.deleteClient(client.getName(), false);
+            if (persistentClient) {
+                logger.debug("Client reverted: " + repository.getMetadata());
+
+            } else {
+                // Delete the client.
+                server.deleteClient(client.getName(), false);
 
-            logger.debug("Client reverted and deleted: " + repository.getMetadata());
+                logger.debug("Client reverted and deleted: " + repository.getMetadata());
+            }
 
         } catch (Exception ex) {
             logger.error(String.format("Unable to revert client for repository %s", repository.json()), ex);
@@ -136,14 +156,34 @@ public class P4Controller extends BaseVersionController {
             }
         }
 
+        boolean existing = persistentClient && server.getClient(clientName) != null;
+
         IClient client = Client.newClient(server, clientName, null, workspace.getPath(), viewMappings);
-        server.createClient(client);
+
+        if (existing) {
+            // The view may have changed with the build data.
+            server.updateClient(client);
+
+        } else {
+            server.createClient(client);
+        }
+
         server.setCurrentClient(client);
 
         logServerInfo(server);
 
+        // The server thinks an existing client has its files. If the workspace was wiped, fetch them all again.
+        boolean forceUpdate = repository.isForceUpdate() || (existing && isEmpty(workspacePath()));
+
+        if (existing && !forceUpdate) {
+            // Same as p4 clean: undo the files earlier builds edited, added or deleted without opening them,
+            // so that the delta sync below starts from exactly what the server thinks the client has.
+            List<IFileSpec> fileSpecs = FileSpecBuilder.makeFileSpecList(client.getRoot() + "/...");
+            client.reconcileFiles(fileSpecs, new ReconcileFilesOptions().setUpdateWorkspace(true));
+        }
+
         SyncOptions syncOptions = new SyncOptions()
-                .setForceUpdate(repository.isForceUpdate())
+                .setForceUpdate(forceUpdate)
                 .setQuiet(repository.isQuiet());
 
         client.sync(new ArrayList<>(), syncOptions);
@@ -163,6 +203,20 @@ public class P4Controller extends BaseVersionController {
         }
     }
 
+    /**
+     * Stable per node and workspace path, so concurrent engines never share a client.
+     */
+    private String persistentClientName() {
+        String node = StringUtils.defaultIfBlank(System.getenv("PUBLIC_FQDN"), "localhost");
+
+        return CLIENT_PREFIX + Utils.sha256(node + ":" + workspace.getPath()).substring(0, 32);
+    }
+
+    private static boolean isEmpty(File dir) {
+        String[] files = dir.list();
+        return files == null || files.length == 0;
+    }
+
     private void logServerInfo(IOptionsServer server) throws Exception {
         if (logger.isDebugEnabled()) {
             IServerInfo info = server.getServerInfo();
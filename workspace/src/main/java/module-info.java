@@ -18,7 +18,8 @@ module io.buildpal.workspace {
     exports io.buildpal.workspace;
 
     provides io.buildpal.core.pipeline.Plugin
-            with io.buildpal.workspace.WorkspaceVerticle, io.buildpal.workspace.ScriptVerticle;
+            with io.buildpal.workspace.WorkspaceVerticle, io.buildpal.workspace.ScriptVerticle,
+                    io.buildpal.workspace.PhaseCacheVerticle;
 
     requires java.scripting;
     requires jdk.scripting.nashorn;
@@ -12,6 +12,13 @@ var Phase = function() {
     this._workingDir = null;
     this._preScript = null;
     this._mainScript = null;
+
+    // Workspace paths the phase reads and writes. Only phases with inputs have their results cached.
+    this._cache = null;
+
+    // Phases (or phase names) this phase depends on. Not enumerable so the phase objects are not serialized;
+    // they are resolved to phase IDs (_dependsOn) when the pipeline is evaluated.
+    Object.defineProperty(this, '_deps', { value: null, writable: true, enumerable: false });
 };
 
 Phase.prototype._initMain = function(shell, envs) {
@@ -76,6 +83,48 @@ Phase.prototype.repo = function(repo) {
 };
 
 
+// Without dependencies, a phase depends on all the phases of the previous stage.
+Phase.prototype.dependsOn = function() {
+    this._deps = this._deps || [];
+
+    for (var a=0; a<arguments.length; a++) {
+        var dependency = arguments[a];
+
+        if (!(dependency instanceof Phase) && typeof dependency !== 'string') {
+            throw 'Please add a valid dependency (at index: ' + a + ')';
+        }
+
+        this._deps.push(dependency);
+    }
+
+    return this;
+};
+
+// Reuse the result of an earlier build when the phase and its inputs didn't change,
+// e.g. cache({ inputs: ['src', 'pom.xml'], outputs: ['target'] }). The outputs are copied back
+// into the workspace on reuse; files the phase writes anywhere else are not.
+Phase.prototype.cache = function(cache) {
+    if (cache) {
+        var inputs = cache.inputs || [];
+        var outputs = cache.outputs || [];
+
+        if (inputs.length === 0) throw 'Please add the input paths of the phase to cache.';
+
+        var paths = inputs.concat(outputs);
+
+        for (var p=0; p<paths.length; p++) {
+            if (typeof paths[p] !== 'string' || paths[p].indexOf('..') > -1) {
+                throw 'Please add a valid relative path to cache (at index: ' + p + ')';
+            }
+        }
+
+        this._cache = { _inputs: inputs, _outputs: outputs };
+        return this;
+    }
+
+    return this._cache;
+};
+
 Phase.prototype.conf = function(conf) {
     if (typeof conf !== 'function') {
         throw 'Configuration should be a function.';
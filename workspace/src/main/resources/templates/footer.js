@@ -24,6 +24,8 @@ function dryRun() {
             }
         }
 
+        resolveDependencies();
+
         return true;
 
     } catch (ex) {
@@ -32,6 +34,39 @@ function dryRun() {
     }
 }
 
+function resolveDependencies() {
+    var ids = {};
+
+    for (var s=0; s<pipeline._stages.length; s++) {
+        var phases = pipeline._stages[s];
+
+        for (var p=0; p<phases.length; p++) {
+            if (phases[p].name()) ids[phases[p].name()] = phases[p].id();
+        }
+    }
+
+    for (var s=0; s<pipeline._stages.length; s++) {
+        var phases = pipeline._stages[s];
+
+        for (var p=0; p<phases.length; p++) {
+            var phase = phases[p];
+
+            if (!phase._deps) continue;
+
+            phase._dependsOn = [];
+
+            for (var d=0; d<phase._deps.length; d++) {
+                var dependency = phase._deps[d];
+                var id = dependency instanceof Phase ? dependency.id() : ids[dependency];
+
+                if (!id) throw 'Phase ' + phase.id() + ' depends on an unknown phase: ' + dependency;
+
+                phase._dependsOn.push(id);
+            }
+        }
+    }
+}
+
 function dryRunPhase(phase) {
     // Change workspace path if a child repo is specified.
     // TODO: Validate multi repo and child.
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Buildpal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.buildpal.workspace;
+
+import io.buildpal.core.domain.Build;
+import io.buildpal.core.domain.Phase;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class PhaseResultsTest {
+
+    private static Phase phase() {
+        return new Phase(new JsonObject()
+                .put("_id", "compile")
+                .put("_mainScript", "mkdir -p target && cp src/* target/")
+                .put("_cache", new JsonObject()
+                        .put("_inputs", new JsonArray().add("src"))
+                        .put("_outputs", new JsonArray().add("target"))));
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(UTF_8));
+    }
+
+    @Test
+    public void hitAfterCleanTest() throws Exception {
+        Path workspace = Files.createTempDirectory("workspace");
+        File phaseDir = workspace.toFile();
+
+        PhaseResults results = new PhaseResults(Files.createTempDirectory("phaseCache").toFile(), 16);
+
+        write(workspace.resolve("src/App.java"), "class App {}");
+
+        // First build runs the phase and stores its result.
+        Build first = new Build().setID("b1").setPipelineID("p1");
+        Phase firstPhase = phase();
+        firstPhase.setCacheKey(PhaseResults.cacheKey(first, firstPhase, phaseDir));
+
+        Assert.assertNull("Nothing should be cached yet.", results.restore(firstPhase, phaseDir));
+
+        write(workspace.resolve("target/App.class"), "compiled");
+        results.store(first, firstPhase, phaseDir);
+
+        // The workspace is cleaned before the next build.
+        org.eclipse.jgit.util.FileUtils.delete(workspace.resolve("target").toFile(),
+                org.eclipse.jgit.util.FileUtils.RECURSIVE);
+
+        Build second = new Build().setID("b2").setPipelineID("p1");
+        Phase secondPhase = phase();
+        secondPhase.setCacheKey(PhaseResults.cacheKey(second, secondPhase, phaseDir));
+
+        Assert.assertEquals("Cache key should not depend on the build.",
+                firstPhase.getCacheKey(), secondPhase.getCacheKey());
+
+        JsonObject entry = results.restore(secondPhase, phaseDir);
+
+        Assert.assertNotNull("Unchanged phase should be a hit.", entry);
+        Assert.assertEquals("b1", entry.getString(PhaseResults.BUILD_ID));
+        Assert.assertEquals("Outputs should be restored.",
+                "compiled", new String(Files.readAllBytes(workspace.resolve("target/App.class")), UTF_8));
+
+        // A changed input is a miss.
+        write(workspace.resolve("src/App.java"), "class App { int v; }");
+
+        Build third = new Build().setID("b3").setPipelineID("p1");
+        Phase thirdPhase = phase();
+        thirdPhase.setCacheKey(PhaseResults.cacheKey(third, thirdPhase, phaseDir));
+
+        Assert.assertNull("Changed input should be a miss.", results.restore(thirdPhase, phaseDir));
+
+        // Evicted builds are no longer reused.
+        results.evict("b1");
+        Assert.assertNull("Evicted result should be a miss.", results.restore(secondPhase, phaseDir));
+    }
+}